@@ -4,10 +4,16 @@ import org.javacord.api.event.interaction.ButtonClickEvent
 import org.javacord.api.event.interaction.MessageContextMenuCommandEvent
 import org.javacord.api.event.interaction.SlashCommandCreateEvent
 import org.javacord.api.event.interaction.UserContextMenuCommandEvent
+import org.javacord.api.event.server.ServerBecomesAvailableEvent
+import org.javacord.api.event.server.ServerJoinEvent
+import org.javacord.api.event.server.ServerLeaveEvent
 import org.javacord.api.listener.interaction.ButtonClickListener
 import org.javacord.api.listener.interaction.MessageContextMenuCommandListener
 import org.javacord.api.listener.interaction.SlashCommandCreateListener
 import org.javacord.api.listener.interaction.UserContextMenuCommandListener
+import org.javacord.api.listener.server.ServerBecomesAvailableListener
+import org.javacord.api.listener.server.ServerJoinListener
+import org.javacord.api.listener.server.ServerLeaveListener
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import pw.mihou.nexus.configuration.NexusConfiguration
@@ -33,7 +39,8 @@ import pw.mihou.nexus.features.paginator.feather.core.NexusFeatherViewEventCore
 import pw.mihou.nexus.features.paginator.feather.core.NexusFeatherViewPagerCore
 import pw.mihou.nexus.sharding.NexusShardingManager
 
-object Nexus: SlashCommandCreateListener, ButtonClickListener, UserContextMenuCommandListener, MessageContextMenuCommandListener {
+object Nexus: SlashCommandCreateListener, ButtonClickListener, UserContextMenuCommandListener, MessageContextMenuCommandListener,
+    ServerJoinListener, ServerLeaveListener, ServerBecomesAvailableListener {
 
     /**
      * The [NexusConfiguration] that is being used by this one and only instance of [Nexus]. It contains all the
@@ -234,7 +241,7 @@ object Nexus: SlashCommandCreateListener, ButtonClickListener, UserContextMenuCo
      */
     override fun onSlashCommandCreate(event: SlashCommandCreateEvent) {
         val command = (commandManager as NexusCommandManagerCore).acceptEvent(event) as NexusCommandCore? ?: return
-        launcher.launch { NexusCommandDispatcher.dispatch(command, event) }
+        launcher.launch(event.interaction) { NexusCommandDispatcher.dispatch(command, event) }
     }
 
     private val FEATHER_KEY_DELIMITER_REGEX = "\\[\\$;".toRegex()
@@ -252,7 +259,7 @@ object Nexus: SlashCommandCreateListener, ButtonClickListener, UserContextMenuCo
         val keys = event.buttonInteraction.customId.split(FEATHER_KEY_DELIMITER_REGEX, limit = 3)
         if (keys.size < 3 || !NexusFeatherPaging.views.containsKey(keys[0])) return
 
-        launcher.launch {
+        launcher.launch(event.interaction) {
             try {
                 NexusFeatherPaging.views[keys[0]]!!
                     .onEvent(NexusFeatherViewEventCore(event, NexusFeatherViewPagerCore(keys[1], keys[0]), keys[2]))
@@ -286,4 +293,38 @@ object Nexus: SlashCommandCreateListener, ButtonClickListener, UserContextMenuCo
         NexusContextMenuDispatcher.dispatch(event, contextMenu)
     }
 
+    /**
+     * An internal method that is used to receive events from Javacord to keep the server routes of the [sharding]
+     * manager up to date and to dispatch the [express] requests that are waiting for the server. You should not use
+     * this method at all.
+     *
+     * @param event The [ServerJoinEvent] received from Javacord.
+     */
+    override fun onServerJoin(event: ServerJoinEvent) {
+        sharding.route(event.server.id, event.api)
+        (express as NexusExpressCore).ready(event.server.id, event.api)
+    }
+
+    /**
+     * An internal method that is used to receive events from Javacord to keep the server routes of the [sharding]
+     * manager up to date. You should not use this method at all.
+     *
+     * @param event The [ServerLeaveEvent] received from Javacord.
+     */
+    override fun onServerLeave(event: ServerLeaveEvent) {
+        sharding.unroute(event.server.id, event.api)
+    }
+
+    /**
+     * An internal method that is used to receive events from Javacord to keep the server routes of the [sharding]
+     * manager up to date and to dispatch the [express] requests that are waiting for the server. You should not use
+     * this method at all.
+     *
+     * @param event The [ServerBecomesAvailableEvent] received from Javacord.
+     */
+    override fun onServerBecomesAvailable(event: ServerBecomesAvailableEvent) {
+        sharding.route(event.server.id, event.api)
+        (express as NexusExpressCore).ready(event.server.id, event.api)
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package pw.mihou.nexus.configuration.modules
 
+import pw.mihou.nexus.express.selection.NexusShardSelector
+import pw.mihou.nexus.express.selection.NexusShardSelectors
 import java.time.Duration
 
 class NexusExpressConfiguration internal constructor() {
@@ -18,4 +20,12 @@ class NexusExpressConfiguration internal constructor() {
     @Volatile
     var showExpiredWarnings = false
 
+    /**
+     * The selector that picks the shard for requests that can be handled by any shard, such as the global
+     * synchronization and indexing. This defaults to [NexusShardSelectors.roundRobin], other selectors can be found in
+     * [NexusShardSelectors].
+     */
+    @Volatile
+    var shardSelector: NexusShardSelector = NexusShardSelectors.roundRobin()
+
 }
\ No newline at end of file
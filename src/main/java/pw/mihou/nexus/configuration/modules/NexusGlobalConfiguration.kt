@@ -8,6 +8,7 @@ import pw.mihou.nexus.core.logger.adapters.NexusLoggingAdapter
 import pw.mihou.nexus.core.logger.adapters.defaults.NexusConsoleLoggingAdapter
 import pw.mihou.nexus.core.logger.adapters.defaults.NexusDefaultLoggingAdapter
 import pw.mihou.nexus.core.logger.adapters.defaults.NexusFasterConsoleLoggingAdapter
+import pw.mihou.nexus.features.command.interceptors.core.NexusInterceptorNameSet
 
 class NexusGlobalConfiguration internal constructor() {
 
@@ -19,7 +20,7 @@ class NexusGlobalConfiguration internal constructor() {
      * Note: This does not create any middlewares, rather it tells the dispatcher what middlewares to reference
      * before processing the local middlewares.
      */
-    val middlewares: MutableSet<String> = mutableSetOf()
+    val middlewares: MutableSet<String> = NexusInterceptorNameSet()
 
     /**
      * A set that includes the names of the afterwares that will be included in the commands and processed
@@ -29,7 +30,7 @@ class NexusGlobalConfiguration internal constructor() {
      * Note: This does not create any afterwares, rather it tells the dispatcher what afterwares to reference
      * before processing the local afterwares.
      */
-    val afterwares: MutableSet<String> = mutableSetOf()
+    val afterwares: MutableSet<String> = NexusInterceptorNameSet()
 
     /**
      * An adapter to help Nexus adopt the same way of logging that your application does.
@@ -55,4 +56,12 @@ class NexusGlobalConfiguration internal constructor() {
      * be more than enough even when considering network latencies.
      */
     @JvmField @Volatile var autoDeferAfterMilliseconds: Long = 2350
+
+    /**
+     * The maximum amount of servers whose commands are fetched at the same time per shard when indexing, the servers are
+     * grouped by their shard, and each shard indexes its servers separately. Discord limits these routes per server, and
+     * Javacord already retries rate-limited requests, therefore, this only keeps a shard from flooding its own
+     * request queue during a large indexing.
+     */
+    @JvmField @Volatile var indexingConcurrencyPerShard: Int = 4
 }
\ No newline at end of file
@@ -1,15 +1,112 @@
 package pw.mihou.nexus.configuration.modules
 
+import org.javacord.api.interaction.InteractionBase
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.threadpool.NexusBoundedLauncher
+import pw.mihou.nexus.core.threadpool.NexusRejectionPolicies
+import pw.mihou.nexus.core.threadpool.NexusRejectionPolicy
 import pw.mihou.nexus.core.threadpool.NexusThreadPool
+import pw.mihou.nexus.core.threadpool.NexusTimingWheelScheduler
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
 
 class NexusLaunchConfiguration internal constructor() {
-    @JvmField var launcher: NexusLaunchWrapper = NexusLaunchWrapper { task ->
-        NexusThreadPool.executorService.submit { task.run() }
+    @JvmField var launcher: NexusLaunchWrapper = launcherOf(NexusThreadPool.executorService)
+    @JvmField var scheduler: NexusScheduledLaunchWrapper = schedulerOf(NexusThreadPool.scheduledExecutorService)
+
+    /**
+     * Switches the [launcher] and [scheduler] to use virtual threads, this is recommended for bots whose handlers
+     * block on REST calls (e.g. `join()` on Javacord futures) since each task will be given a cheap virtual thread
+     * instead of a platform thread, which prevents the pool from growing into thousands of platform threads during bursts.
+     *
+     * Virtual threads are only available on JDK 21 and above, on older JVMs, this leaves the [launcher] and [scheduler]
+     * unchanged and logs a warning.
+     *
+     * @return whether the launcher and scheduler were switched to virtual threads.
+     */
+    fun useVirtualThreads(): Boolean {
+        val executorService = NexusThreadPool.virtualExecutorService()
+        val scheduledExecutorService = NexusThreadPool.virtualScheduledExecutorService()
+
+        if (executorService == null || scheduledExecutorService == null) {
+            Nexus.logger.warn("Virtual threads are not supported by this JVM (requires JDK 21 and above), " +
+                    "Nexus will continue to use the platform thread pools instead.")
+            return false
+        }
+
+        launcher = launcherOf(executorService)
+        scheduler = schedulerOf(scheduledExecutorService)
+        return true
+    }
+
+    /**
+     * Switches the [launcher] and [scheduler] back to the default platform thread pools of [NexusThreadPool].
+     */
+    fun usePlatformThreads() {
+        launcher = launcherOf(NexusThreadPool.executorService)
+        scheduler = schedulerOf(NexusThreadPool.scheduledExecutorService)
+    }
+
+    /**
+     * Switches the [launcher] to a [NexusBoundedLauncher] which has a fixed amount of threads and a bounded queue,
+     * this prevents bursts or slow downstreams from spawning threads without limit. When the launcher is saturated,
+     * the task is handed to the given [NexusRejectionPolicy].
+     *
+     * You can use the returned [NexusBoundedLauncher] to monitor the queue depth and the rejection counters.
+     *
+     * @param concurrency the maximum amount of threads that can execute tasks at the same time.
+     * @param queueCapacity the maximum amount of tasks that can wait for a thread.
+     * @param policy the policy to use when the launcher is saturated.
+     * @return the [NexusBoundedLauncher] that is now used as the launcher.
+     */
+    @JvmOverloads
+    fun useBoundedLauncher(
+        concurrency: Int,
+        queueCapacity: Int,
+        policy: NexusRejectionPolicy = NexusRejectionPolicies.CALLER_RUNS
+    ): NexusBoundedLauncher {
+        val previous = launcher
+        val bounded = NexusBoundedLauncher(concurrency, queueCapacity, policy)
+        launcher = bounded
+
+        if (previous is NexusBoundedLauncher) {
+            previous.shutdown()
+        }
+        return bounded
+    }
+
+    /**
+     * Switches the [scheduler] to a [NexusTimingWheelScheduler], this is the recommended scheduler for high-volume bots
+     * since it schedules and cancels tasks in constant time, and nearly all the tasks that Nexus schedules (auto-defers,
+     * Express expirations) are cancelled before they run.
+     *
+     * If the previous scheduler was also a [NexusTimingWheelScheduler], it keeps running until the tasks that were
+     * already scheduled on it are executed or cancelled, and is stopped afterwards.
+     *
+     * @param tickInMillis the duration of one tick of the wheel in milliseconds, tasks may run up to this much later.
+     * @param ticksPerWheel the amount of buckets in the wheel.
+     * @return the [NexusTimingWheelScheduler] that is now used as the scheduler.
+     */
+    @JvmOverloads
+    fun useTimingWheelScheduler(tickInMillis: Long = 10, ticksPerWheel: Int = 512): NexusTimingWheelScheduler {
+        val previous = scheduler
+        val wheel = NexusTimingWheelScheduler(tickInMillis, ticksPerWheel)
+        scheduler = wheel
+
+        if (previous is NexusTimingWheelScheduler) {
+            previous.shutdownGracefully()
+        }
+        return wheel
     }
-    @JvmField var scheduler: NexusScheduledLaunchWrapper = NexusScheduledLaunchWrapper { timeInMillis, task ->
+
+    private fun launcherOf(executorService: ExecutorService) = NexusLaunchWrapper { task ->
+        executorService.submit { task.run() }
+    }
+
+    private fun schedulerOf(scheduledExecutorService: ScheduledExecutorService) = NexusScheduledLaunchWrapper { timeInMillis, task ->
         return@NexusScheduledLaunchWrapper object: Cancellable {
-            val scheduledTask = NexusThreadPool.scheduledExecutorService.schedule(task::run, timeInMillis, TimeUnit.MILLISECONDS)
+            val scheduledTask = scheduledExecutorService.schedule(task::run, timeInMillis, TimeUnit.MILLISECONDS)
             override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
                 return scheduledTask.cancel(mayInterruptIfRunning)
             }
@@ -19,6 +116,19 @@ class NexusLaunchConfiguration internal constructor() {
 
 fun interface NexusLaunchWrapper {
     fun launch(task: NexusLaunchTask)
+
+    /**
+     * Launches a task that is responding to the given interaction, launchers that can reject tasks (such as
+     * [NexusBoundedLauncher]) can use the interaction to answer the user when the task is rejected.
+     *
+     * This is the admission control of an interaction, therefore, the interaction must not have been acknowledged yet.
+     * Nexus only passes the interaction when the event is received, before the middlewares are executed and before the
+     * interaction is deferred, the tasks that are launched afterwards for the same interaction carry no interaction.
+     *
+     * @param interaction the interaction that the task is responding to, if any.
+     * @param task the task to launch.
+     */
+    fun launch(interaction: InteractionBase?, task: NexusLaunchTask) = launch(task)
 }
 
 fun interface NexusScheduledLaunchWrapper {
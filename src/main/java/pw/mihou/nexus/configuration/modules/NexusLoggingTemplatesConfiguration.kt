@@ -3,6 +3,7 @@ package pw.mihou.nexus.configuration.modules
 import org.javacord.api.interaction.ApplicationCommand
 import org.javacord.api.interaction.SlashCommand
 import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.features.command.synchronizer.records.NexusSynchronizationReport
 
 class NexusLoggingTemplatesConfiguration internal constructor() {
 
@@ -16,6 +17,12 @@ class NexusLoggingTemplatesConfiguration internal constructor() {
     var SERVER_COMMANDS_SYNCHRONIZED: (server: Long, commands: Set<ApplicationCommand>) -> String =
         { server, commands -> "All server commands for $server has been pushed to Discord successfully. {size=" + commands.size + "}"}
 
+    @get:JvmSynthetic
+    @set:JvmName("setCommandsSynchronizedMessage")
+    var COMMANDS_SYNCHRONIZED: (report: NexusSynchronizationReport) -> String =
+        { report -> "All commands have been synchronized with Discord. {skipped=${report.skipped}, updated=${report.updated}, " +
+                "created=${report.created}, failed=${report.failed}}" }
+
     @get:JvmSynthetic
     @set:JvmName("setServerCommandDeletedMessage")
     var SERVER_COMMAND_DELETED: (server: Long, command: SlashCommand) -> String =
@@ -36,6 +43,11 @@ class NexusLoggingTemplatesConfiguration internal constructor() {
     var COMMANDS_INDXED: (timeTakenInMilliseconds: Long) -> String =
         { millis -> "All commands have been indexed and stored in the index store. {timeTaken=$millis}" }
 
+    @get:JvmSynthetic
+    @set:JvmName("setShardCommandsIndexedMessage")
+    var SHARD_COMMANDS_INDEXED: (shard: Int, servers: Int, indexed: Int, total: Int) -> String =
+        { shard, servers, indexed, total -> "All server commands of shard $shard have been indexed. {servers=$servers, progress=$indexed/$total}" }
+
     @get:JvmSynthetic
     @set:JvmName("setIndexingCommandsMessage")
     var INDEXING_COMMANDS = "All commands are now being queued for indexing, this will take some time especially with large bots, but will allow for " +
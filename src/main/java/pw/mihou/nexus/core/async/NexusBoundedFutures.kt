@@ -0,0 +1,55 @@
+package pw.mihou.nexus.core.async
+
+import pw.mihou.nexus.Nexus
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentLinkedQueue
+
+internal object NexusBoundedFutures {
+
+    /**
+     * Executes the asynchronous task for each one of the items while keeping at most [concurrency] tasks in-flight at
+     * the same time, a new task is only started once one of the in-flight tasks completes. Tasks that fail do not stop
+     * the remaining tasks, therefore, the tasks are expected to handle their own failures.
+     *
+     * @param items the items to execute the task for.
+     * @param concurrency the maximum amount of in-flight tasks.
+     * @param task the task to execute for each item.
+     * @return a future that completes once all the tasks have completed.
+     */
+    fun <T> forEach(items: Collection<T>, concurrency: Int, task: (T) -> CompletionStage<*>): CompletableFuture<Void> {
+        require(concurrency > 0) { "The concurrency of bounded futures must be greater than zero." }
+        if (items.isEmpty()) return CompletableFuture.completedFuture(null)
+
+        val queue = ConcurrentLinkedQueue(items)
+        val workers = Array(minOf(concurrency, items.size)) { CompletableFuture<Void>() }
+        for (worker in workers) {
+            next(queue, task, worker)
+        }
+
+        return CompletableFuture.allOf(*workers)
+    }
+
+    private fun <T> next(queue: ConcurrentLinkedQueue<T>, task: (T) -> CompletionStage<*>, worker: CompletableFuture<Void>) {
+        while (true) {
+            val item = queue.poll()
+            if (item == null) {
+                worker.complete(null)
+                return
+            }
+
+            val future = try {
+                task(item).toCompletableFuture()
+            } catch (exception: Exception) {
+                Nexus.logger.error("An uncaught exception was caught while starting a bounded task.", exception)
+                continue
+            }
+
+            // Tasks that complete immediately continue on the loop instead of recursing through the callbacks.
+            if (future.isDone) continue
+
+            future.whenComplete { _, _ -> next(queue, task, worker) }
+            return
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package pw.mihou.nexus.core.collections
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A concurrent, open-addressing hash map that is keyed by primitive `long`s, this is used for hot lookups such as
+ * application command identifiers where boxing every key on each lookup would create garbage for nothing.
+ *
+ * Reads are lock-free and allocation-free: they read the current table once and probe it linearly. Writes are
+ * serialized by a lock and publish each entry with a volatile write, while resizes and [replaceAll] build a new table
+ * on the side and swap it in one go, which means readers never see a half-built table.
+ */
+class NexusConcurrentLongMap<V: Any> @JvmOverloads constructor(capacity: Int = 16) {
+
+    private class Entry<V>(@JvmField val key: Long, @JvmField val value: V?)
+
+    @Volatile private var table: AtomicReferenceArray<Entry<V>?> = AtomicReferenceArray(tableSizeFor(capacity))
+
+    /**
+     * The amount of live entries and the amount of used slots (live entries and tombstones) in the table, these are only
+     * modified while holding the lock.
+     */
+    @Volatile private var live = 0
+    private var used = 0
+
+    private val lock = ReentrantLock()
+
+    companion object {
+        private const val MAXIMUM_CAPACITY = 1 shl 30
+
+        private fun tableSizeFor(capacity: Int): Int {
+            var size = 2
+            while (size < capacity * 2 && size < MAXIMUM_CAPACITY) {
+                size = size shl 1
+            }
+            return size
+        }
+
+        private fun mix(key: Long): Int {
+            val hash = key * -7046029254386353131L
+            return (hash xor (hash ushr 32)).toInt()
+        }
+    }
+
+    /**
+     * Gets the amount of entries in the map.
+     */
+    val size: Int get() = live
+
+    /**
+     * Gets the value that is associated with the key.
+     *
+     * @param key the key to look up.
+     * @return the value associated with the key, if any.
+     */
+    operator fun get(key: Long): V? {
+        val table = table
+        val mask = table.length() - 1
+        var index = mix(key) and mask
+        while (true) {
+            val entry = table.get(index) ?: return null
+            if (entry.key == key && entry.value != null) return entry.value
+            index = (index + 1) and mask
+        }
+    }
+
+    /**
+     * Checks whether the key is associated with any value.
+     *
+     * @param key the key to look up.
+     * @return whether the key is associated with any value.
+     */
+    fun containsKey(key: Long) = get(key) != null
+
+    /**
+     * Associates the value with the key, replacing any value that was previously associated.
+     *
+     * @param key the key to associate.
+     * @param value the value to associate with the key.
+     */
+    operator fun set(key: Long, value: V) {
+        put(key, value)
+    }
+
+    /**
+     * Associates the value with the key, replacing any value that was previously associated.
+     *
+     * @param key the key to associate.
+     * @param value the value to associate with the key.
+     * @return the value that was previously associated with the key, if any.
+     */
+    fun put(key: Long, value: V): V? = lock.withLock {
+        ensureCapacity(used + 1)
+        insert(table, key, value)
+    }
+
+    /**
+     * Associates all the values with their keys while holding the lock only once.
+     *
+     * @param values the values to associate.
+     * @param key the function to get the key of each value.
+     */
+    fun putAll(values: Collection<V>, key: (V) -> Long) = lock.withLock {
+        ensureCapacity(used + values.size)
+        val table = table
+        for (value in values) {
+            insert(table, key(value), value)
+        }
+    }
+
+    /**
+     * Removes the value that is associated with the key.
+     *
+     * @param key the key to remove.
+     * @return the value that was associated with the key, if any.
+     */
+    fun remove(key: Long): V? = lock.withLock {
+        val table = table
+        val index = indexOf(table, key)
+        if (index == -1) return@withLock null
+
+        val value = table.get(index)!!.value
+        table.set(index, Entry(key, null))
+        live--
+        value
+    }
+
+    /**
+     * Removes the key only if it is associated with the given value.
+     *
+     * @param key the key to remove.
+     * @param value the value that the key must be associated with, compared by identity.
+     * @return whether the key was removed.
+     */
+    fun remove(key: Long, value: V): Boolean = lock.withLock {
+        if (get(key) !== value) return false
+        remove(key)
+        return true
+    }
+
+    /**
+     * Atomically replaces all the entries of the map with the given values, the new table is built without
+     * holding the lock and readers will either see the old entries or the new entries, never an empty map.
+     *
+     * @param values the values that the map should contain.
+     * @param key the function to get the key of each value.
+     */
+    fun replaceAll(values: Collection<V>, key: (V) -> Long) {
+        val table = AtomicReferenceArray<Entry<V>?>(tableSizeFor(values.size.coerceAtLeast(16)))
+        var count = 0
+        for (value in values) {
+            if (insertInto(table, key(value), value)) count++
+        }
+
+        lock.withLock {
+            this.table = table
+            this.live = count
+            this.used = count
+        }
+    }
+
+    /**
+     * Removes all the entries of the map.
+     */
+    fun clear() = lock.withLock {
+        table = AtomicReferenceArray(tableSizeFor(16))
+        live = 0
+        used = 0
+    }
+
+    /**
+     * Creates a snapshot of all the values in the map.
+     *
+     * @return all the values in the map.
+     */
+    fun values(): List<V> {
+        val table = table
+        val values = ArrayList<V>(live)
+        for (index in 0 until table.length()) {
+            val value = table.get(index)?.value ?: continue
+            values.add(value)
+        }
+        return values
+    }
+
+    /**
+     * Iterates over all the values in the map without creating a snapshot, values that are added during the
+     * iteration may or may not be visited.
+     *
+     * @param action the action to perform for each value.
+     */
+    inline fun forEachValue(action: (V) -> Unit) {
+        val values = valuesTable()
+        for (index in 0 until values.length()) {
+            val value = valueAt(values, index) ?: continue
+            action(value)
+        }
+    }
+
+    @PublishedApi
+    internal fun valuesTable(): AtomicReferenceArray<*> = table
+
+    @PublishedApi
+    @Suppress("UNCHECKED_CAST")
+    internal fun valueAt(table: AtomicReferenceArray<*>, index: Int): V? = (table.get(index) as Entry<V>?)?.value
+
+    private fun ensureCapacity(required: Int) {
+        val table = table
+        if (required * 2 <= table.length()) return
+
+        val resized = AtomicReferenceArray<Entry<V>?>(tableSizeFor(live + (required - used)))
+        for (index in 0 until table.length()) {
+            val entry = table.get(index) ?: continue
+            val value = entry.value ?: continue
+            insertInto(resized, entry.key, value)
+        }
+
+        this.table = resized
+        this.used = live
+    }
+
+    private fun indexOf(table: AtomicReferenceArray<Entry<V>?>, key: Long): Int {
+        val mask = table.length() - 1
+        var index = mix(key) and mask
+        while (true) {
+            val entry = table.get(index) ?: return -1
+            if (entry.key == key) return if (entry.value != null) index else -1
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun insert(table: AtomicReferenceArray<Entry<V>?>, key: Long, value: V): V? {
+        val mask = table.length() - 1
+        var index = mix(key) and mask
+        while (true) {
+            val entry = table.get(index)
+            if (entry == null) {
+                table.set(index, Entry(key, value))
+                used++
+                live++
+                return null
+            }
+
+            if (entry.key == key) {
+                table.set(index, Entry(key, value))
+                if (entry.value == null) live++
+                return entry.value
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun insertInto(table: AtomicReferenceArray<Entry<V>?>, key: Long, value: V): Boolean {
+        val mask = table.length() - 1
+        var index = mix(key) and mask
+        while (true) {
+            val entry = table.get(index)
+            if (entry == null) {
+                table.set(index, Entry(key, value))
+                return true
+            }
+
+            if (entry.key == key) {
+                table.set(index, Entry(key, value))
+                return false
+            }
+            index = (index + 1) and mask
+        }
+    }
+}
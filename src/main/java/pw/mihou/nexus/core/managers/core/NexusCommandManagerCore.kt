@@ -8,16 +8,21 @@ import org.javacord.api.interaction.ApplicationCommandInteraction
 import org.javacord.api.util.logging.ExceptionLogger
 import pw.mihou.nexus.Nexus
 import pw.mihou.nexus.configuration.modules.info
+import pw.mihou.nexus.core.async.NexusBoundedFutures
 import pw.mihou.nexus.features.commons.NexusApplicationCommand
 import pw.mihou.nexus.core.managers.facade.NexusCommandManager
 import pw.mihou.nexus.core.managers.indexes.IndexStore
 import pw.mihou.nexus.core.managers.indexes.defaults.InMemoryIndexStore
 import pw.mihou.nexus.core.managers.indexes.exceptions.IndexIdentifierConflictException
 import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import pw.mihou.nexus.express.core.NexusExpressCore
 import pw.mihou.nexus.features.command.core.NexusCommandCore
 import pw.mihou.nexus.features.command.facade.NexusCommand
 import pw.mihou.nexus.features.contexts.enums.ContextMenuKinds
 import pw.mihou.nexus.features.contexts.NexusContextMenu
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.collections.HashMap
 import kotlin.collections.HashSet
 
@@ -25,6 +30,9 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
     private val commandsDelegate: MutableMap<String, NexusCommand> = HashMap()
     private val contextMenusDelegate: MutableMap<String, NexusContextMenu> = HashMap()
 
+    private val commandResolutions = NexusResolutionIndex<NexusCommand>()
+    private val contextMenuResolutions = ContextMenuKinds.values().associateWith { NexusResolutionIndex<NexusContextMenu>() }
+
     override val contextMenus: Collection<NexusContextMenu>
         get() = contextMenusDelegate.values
 
@@ -38,6 +46,7 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
             throw IndexIdentifierConflictException(command.name)
 
         commandsDelegate[(command as NexusCommandCore).uuid] = command
+        commandResolutions.add(command.name, command.serverIds, command)
         return this
     }
 
@@ -46,23 +55,37 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
             throw IndexIdentifierConflictException(contextMenu.name)
 
         contextMenusDelegate[contextMenu.uuid] = contextMenu
+        contextMenuResolutions[contextMenu.kind]!!.add(contextMenu.name, contextMenu.serverIds, contextMenu)
         return this
     }
 
+    /**
+     * Updates the name resolution index of the command after its servers have changed, this is called by
+     * [NexusCommand.associate] and [NexusCommand.disassociate] and has no effect on commands that were not added.
+     *
+     * @param command the command whose servers have changed.
+     * @param previousServerIds the servers that the command was associated with before the change.
+     */
+    fun reindex(command: NexusCommand, previousServerIds: List<Long>) {
+        if (commandsDelegate[command.uuid] !== command) return
+        commandResolutions.replace(command.name, previousServerIds, command.serverIds, command)
+    }
+
+    /**
+     * Updates the name resolution index of the context menu after its servers have changed, this is called whenever
+     * [NexusContextMenu.serverIds] is modified and has no effect on context menus that were not added.
+     *
+     * @param contextMenu the context menu whose servers have changed.
+     * @param previousServerIds the servers that the context menu was associated with before the change.
+     */
+    fun reindex(contextMenu: NexusContextMenu, previousServerIds: List<Long>) {
+        if (contextMenusDelegate[contextMenu.uuid] !== contextMenu) return
+        contextMenuResolutions[contextMenu.kind]!!.replace(contextMenu.name, previousServerIds, contextMenu.serverIds, contextMenu)
+    }
+
     override operator fun get(applicationId: Long): NexusCommand? = indexStore[applicationId]?.takeCommand()
     override operator fun get(uuid: String): NexusCommand? = commandsDelegate[uuid]
-    override operator fun get(name: String, server: Long?): NexusCommand? {
-        return commands.firstOrNull { command ->
-            when (server) {
-                null -> {
-                    command.name.equals(name, ignoreCase = true)
-                }
-                else -> {
-                    command.name.equals(name, ignoreCase = true) && command.serverIds.contains(server)
-                }
-            }
-        }
-    }
+    override operator fun get(name: String, server: Long?): NexusCommand? = commandResolutions[name, server]
 
     override fun getContextMenu(applicationId: Long): NexusContextMenu? {
         return indexStore[applicationId]?.takeContextMenu()
@@ -72,18 +95,8 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
         return contextMenusDelegate[uuid]
     }
 
-    override fun getContextMenu(name: String, kind: ContextMenuKinds, server: Long?): NexusContextMenu? {
-        return contextMenus.firstOrNull { contextMenu ->
-            when(server) {
-                null -> {
-                    contextMenu.name.equals(name, ignoreCase = true) && contextMenu.kind == kind
-                }
-                else -> {
-                    contextMenu.name.equals(name, ignoreCase = true) && contextMenu.serverIds.contains(server) && contextMenu.kind == kind
-                }
-            }
-        }
-    }
+    override fun getContextMenu(name: String, kind: ContextMenuKinds, server: Long?): NexusContextMenu? =
+        contextMenuResolutions[kind]!![name, server]
 
     override fun export(): List<NexusMetaIndex> {
         return indexStore.all()
@@ -144,14 +157,10 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
         Nexus.configuration.loggingTemplates.INDEXING_COMMANDS.info()
 
         val start = System.currentTimeMillis()
-        Nexus.express
-            .awaitAvailable()
-            .thenAcceptAsync { shard ->
-                val applicationCommands  = shard.globalApplicationCommands.join()
-                indexStore.clear()
-                for (applicationCommand in applicationCommands) {
-                    index(applicationCommand)
-                }
+        (Nexus.express as NexusExpressCore)
+            .withAvailable { shard -> shard.globalApplicationCommands }
+            .thenCompose { applicationCommands ->
+                val indexes = ConcurrentLinkedQueue(manifest(applicationCommands))
 
                 val servers: MutableSet<Long> = HashSet()
                 for (serverCommand in serverCommands) {
@@ -160,57 +169,70 @@ class NexusCommandManagerCore internal constructor() : NexusCommandManager  {
                 for (serverContextMenu in serverContextMenus) {
                     servers.addAll(serverContextMenu.serverIds)
                 }
+                servers.remove(0L)
 
-                for (server in servers) {
-                    if (server == 0L) continue
-                    val applicationCommandSet: Set<ApplicationCommand>  = Nexus.express
-                        .await(server)
-                        .thenComposeAsync { it.api.getServerApplicationCommands(it) }
-                        .join()
-
-                    for (applicationCommand in applicationCommandSet) {
-                        index(applicationCommand)
-                    }
-                }
-
+                indexServers(servers, indexes).thenApply { indexes }
+            }
+            .thenAccept { indexes ->
+                indexStore.replaceAll(indexes.toList())
                 Nexus.configuration.loggingTemplates.COMMANDS_INDXED(System.currentTimeMillis() - start).info()
             }
             .exceptionally(ExceptionLogger.get())
             .join()
     }
 
-    private fun <Command: NexusApplicationCommand> manifest(command: Command, snowflake: Long, server: Long?) =
-        toIndex(applicationCommandId = snowflake, command = command.uuid, server = server)
-
-    override fun <Command: NexusApplicationCommand> index(command: Command, snowflake: Long, server: Long?) {
-        indexStore.add(toIndex(applicationCommandId = snowflake, command = command.uuid, server = server))
-    }
-
-    override fun index(applicationCommandList: Set<ApplicationCommand>) {
-        val indexes = mutableListOf<NexusMetaIndex>()
-        for (applicationCommand in applicationCommandList) {
-            val serverId: Long? = applicationCommand.serverId.orElse(null)
-
-            if (serverId == null) {
-                for (command in commands) {
-                    if (command.serverIds.isNotEmpty()) continue
-                    if (!command.name.equals(applicationCommand.name, ignoreCase = true)) continue
-
-                    indexes.add(manifest(command, applicationCommand.id, null))
-                    break
+    /**
+     * Indexes the commands of all the servers into the given collection, the servers are grouped by their shard and
+     * each shard fetches the commands of its servers with a bounded concurrency which is configured through
+     * [pw.mihou.nexus.configuration.modules.NexusGlobalConfiguration.indexingConcurrencyPerShard]. Servers that fail
+     * to be indexed are logged and skipped.
+     *
+     * @param servers the servers to index.
+     * @param indexes the collection to add the indexes into.
+     * @return a future that completes once all the servers have been indexed.
+     */
+    private fun indexServers(servers: Set<Long>, indexes: MutableCollection<NexusMetaIndex>): CompletableFuture<Void> {
+        val total = servers.size
+        val indexed = AtomicInteger()
+        val concurrency = Nexus.configuration.global.indexingConcurrencyPerShard
+
+        val resolved = servers.map { id ->
+            Nexus.express.await(id).handle { server, exception ->
+                if (exception != null) {
+                    Nexus.logger.error("Failed to index the commands of the server $id since it couldn't be found.", exception)
+                    indexed.incrementAndGet()
                 }
-            } else {
-                for (command in commands) {
-                    if (!command.name.equals(applicationCommand.name, ignoreCase = true)) continue
-                    if (!command.serverIds.contains(serverId)) continue
+                server
+            }
+        }
 
-                    indexes.add(manifest(command, applicationCommand.id, serverId))
-                    break
+        return CompletableFuture.allOf(*resolved.toTypedArray()).thenCompose {
+            val shards = resolved.mapNotNull { it.join() }.groupBy { it.api.currentShard }
+            val tasks = shards.map { (shard, shardServers) ->
+                NexusBoundedFutures.forEach(shardServers, concurrency) { server ->
+                    server.api.getServerApplicationCommands(server).handle { applicationCommands, exception ->
+                        if (exception != null) {
+                            Nexus.logger.error("Failed to index the commands of the server ${server.id}.", exception)
+                        } else {
+                            indexes.addAll(manifest(applicationCommands))
+                        }
+                        indexed.incrementAndGet()
+                    }
+                }.thenRun {
+                    Nexus.configuration.loggingTemplates.SHARD_COMMANDS_INDEXED(shard, shardServers.size, indexed.get(), total).info()
                 }
             }
+
+            CompletableFuture.allOf(*tasks.toTypedArray())
         }
+    }
 
-        indexStore.addAll(indexes)
+    override fun <Command: NexusApplicationCommand> index(command: Command, snowflake: Long, server: Long?) {
+        indexStore.add(toIndex(applicationCommandId = snowflake, command = command.uuid, server = server))
+    }
+
+    override fun index(applicationCommandList: Set<ApplicationCommand>) {
+        indexStore.addAll(manifest(applicationCommandList))
     }
 
     override fun index(applicationCommand: ApplicationCommand) {
@@ -0,0 +1,77 @@
+package pw.mihou.nexus.core.managers.core
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A name resolution index is a hash index of commands (or context menus) keyed by their lower-cased name and then by
+ * their servers, this is used by the command manager to resolve commands that have no index in the [pw.mihou.nexus.core.managers.indexes.IndexStore]
+ * without scanning all the commands.
+ */
+internal class NexusResolutionIndex<Command: Any> {
+
+    private val entries = ConcurrentHashMap<String, Entry<Command>>()
+
+    private class Entry<Command: Any> {
+        @Volatile var global: Command? = null
+        val servers = ConcurrentHashMap<Long, Command>()
+    }
+
+    /**
+     * Adds the command into the index, a command without any servers is indexed as a global command.
+     *
+     * @param name the name of the command.
+     * @param serverIds the servers that the command is associated with.
+     * @param command the command to index.
+     */
+    fun add(name: String, serverIds: List<Long>, command: Command) {
+        val entry = entries.computeIfAbsent(name.lowercase()) { Entry() }
+        if (serverIds.isEmpty()) {
+            entry.global = command
+            return
+        }
+
+        for (server in serverIds) {
+            entry.servers[server] = command
+        }
+    }
+
+    /**
+     * Replaces the servers of the command in the index, the new servers are indexed first before the old servers are
+     * removed so that the command is always resolvable while it is being re-indexed.
+     *
+     * @param name the name of the command.
+     * @param previous the servers that the command was associated with.
+     * @param current the servers that the command is now associated with.
+     * @param command the command to re-index.
+     */
+    fun replace(name: String, previous: List<Long>, current: List<Long>, command: Command) {
+        add(name, current, command)
+
+        val entry = entries[name.lowercase()] ?: return
+        if (previous.isEmpty() && current.isNotEmpty() && entry.global === command) {
+            entry.global = null
+        }
+
+        for (server in previous) {
+            if (current.contains(server)) continue
+            entry.servers.remove(server, command)
+        }
+    }
+
+    /**
+     * Resolves the command with the given name and server. When the server is null, this resolves to the global command
+     * with the name, or any command with the name if there is no global command.
+     *
+     * @param name the name of the command, case-insensitive.
+     * @param server the server of the command, if any.
+     * @return the command that matches.
+     */
+    operator fun get(name: String, server: Long?): Command? {
+        val entry = entries[name.lowercase()] ?: return null
+        if (server == null) {
+            return entry.global ?: entry.servers.values.firstOrNull()
+        }
+
+        return entry.servers[server]
+    }
+}
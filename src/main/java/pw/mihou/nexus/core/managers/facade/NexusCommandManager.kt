@@ -137,6 +137,31 @@ interface NexusCommandManager {
         return contextMenus
     }
 
+    /**
+     * Creates the indexes of the given application commands without adding them to the [indexStore], the commands are
+     * matched in the same manner as [index], that is, by their name and their server.
+     *
+     * @param applicationCommandList the commands to create the indexes of.
+     * @return the indexes of the commands that matched a command.
+     */
+    fun manifest(applicationCommandList: Collection<ApplicationCommand>): List<NexusMetaIndex> {
+        val indexes = mutableListOf<NexusMetaIndex>()
+        for (applicationCommand in applicationCommandList) {
+            val serverId: Long? = applicationCommand.serverId.orElse(null)
+
+            for (command in commands) {
+                if (!command.name.equals(applicationCommand.name, ignoreCase = true)) continue
+                if (serverId == null && command.serverIds.isNotEmpty()) continue
+                if (serverId != null && !command.serverIds.contains(serverId)) continue
+
+                indexes.add(NexusMetaIndex(command = command.uuid, applicationCommandId = applicationCommand.id, server = serverId))
+                break
+            }
+        }
+
+        return indexes
+    }
+
     fun add(command: NexusCommand): NexusCommandManager
     fun add(contextMenu: NexusContextMenu): NexusCommandManager
 
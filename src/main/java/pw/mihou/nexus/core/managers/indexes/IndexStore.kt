@@ -19,7 +19,9 @@ interface IndexStore {
     operator fun get(applicationCommandId: Long): NexusMetaIndex?
 
     /**
-     * Gets the [NexusMetaIndex] that matches the given specifications.
+     * Gets the [NexusMetaIndex] that matches the given specifications, this is called whenever a command mention is
+     * rendered, therefore, stores should keep a secondary index by the command and server instead of scanning all
+     * the indexes.
      * @param command the command name.
      * @param server the server that this command belongs.
      * @return the [NexusMetaIndex] that matches.
@@ -36,7 +38,8 @@ interface IndexStore {
      */
     fun mentionOne(server: Long?, command: String, override: String? = null, default: String): String {
         val index = get(command, server) ?: return default
-        return "</${override ?: index.command}:${index.applicationCommandId}>"
+        if (override == null) return index.mention()
+        return "</$override:${index.applicationCommandId}>"
     }
 
     /**
@@ -49,7 +52,7 @@ interface IndexStore {
         val indexes = many(server, *names)
         val map = mutableMapOf<String, String>()
         for (index in indexes) {
-            map[index.command] = "</${index.command}:${index.applicationCommandId}>"
+            map[index.command] = index.mention()
         }
         return map
     }
@@ -67,7 +70,7 @@ interface IndexStore {
      * @param names the names of the commands to fetch.
      * @return the [NexusMetaIndex]es that matches.
      */
-    fun many(server: Long?, vararg names: String): List<NexusMetaIndex>
+    fun many(server: Long?, vararg names: String): List<NexusMetaIndex> = names.mapNotNull { get(it, server) }
 
     /**
      * Adds one or more [NexusMetaIndex] into the store, this is used in scenarios such as mass-synchronization which
@@ -77,6 +80,18 @@ interface IndexStore {
      */
     fun addAll(metaIndexes: List<NexusMetaIndex>)
 
+    /**
+     * Replaces all the known indexes in the store with the given indexes, this is used by the command manager when
+     * re-indexing. Stores should override this to swap the indexes atomically so that commands that are invoked
+     * in the middle of a re-indexing can still be resolved, by default, this clears the store then adds the indexes.
+     *
+     * @param metaIndexes the indexes that the store should contain.
+     */
+    fun replaceAll(metaIndexes: List<NexusMetaIndex>) {
+        clear()
+        addAll(metaIndexes)
+    }
+
     /**
      * Gets all the [NexusMetaIndex] available in the store, this is used more when the command manager's indexes are
      * exported somewhere.
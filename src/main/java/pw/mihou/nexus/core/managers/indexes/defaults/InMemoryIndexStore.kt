@@ -1,38 +1,102 @@
 package pw.mihou.nexus.core.managers.indexes.defaults
 
+import pw.mihou.nexus.core.collections.NexusConcurrentLongMap
 import pw.mihou.nexus.core.managers.indexes.IndexStore
 import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 class InMemoryIndexStore: IndexStore {
 
-    private val indexes: MutableMap<Long, NexusMetaIndex> = mutableMapOf()
+    private val indexes = NexusConcurrentLongMap<NexusMetaIndex>()
+    @Volatile private var names = NameIndex()
 
-    override fun add(metaIndex: NexusMetaIndex) {
-        indexes[metaIndex.applicationCommandId] = metaIndex
+    /**
+     * Writes are serialized so that the application command identifiers and the names never disagree with each other,
+     * reads are never blocked by this.
+     */
+    private val lock = ReentrantLock()
+
+    override fun add(metaIndex: NexusMetaIndex) = lock.withLock {
+        val previous = indexes.put(metaIndex.applicationCommandId, metaIndex)
+        if (previous != null) names.remove(previous)
+        names.add(metaIndex)
     }
 
     override operator fun get(applicationCommandId: Long): NexusMetaIndex? = indexes[applicationCommandId]
-    override fun get(command: String, server: Long?): NexusMetaIndex? {
-        return indexes.values.firstOrNull { it.command == command && it.server == server }
-    }
+    override fun get(command: String, server: Long?): NexusMetaIndex? = names[command, server]
 
     override fun many(vararg applicationCommandIds: Long): List<NexusMetaIndex> {
-        return applicationCommandIds.map(indexes::get).filterNotNull().toList()
+        return applicationCommandIds.mapNotNull { indexes[it] }
     }
 
-    override fun many(server: Long?, vararg names: String): List<NexusMetaIndex> {
-        return indexes.values.filter { it.server == server && names.contains(it.command) }.toList()
+    override fun addAll(metaIndexes: List<NexusMetaIndex>) = lock.withLock {
+        for (metaIndex in metaIndexes) {
+            add(metaIndex)
+        }
     }
 
-    override fun addAll(metaIndexes: List<NexusMetaIndex>) {
+    override fun replaceAll(metaIndexes: List<NexusMetaIndex>) {
+        val latest = LinkedHashMap<Long, NexusMetaIndex>(metaIndexes.size)
         for (metaIndex in metaIndexes) {
-            indexes[metaIndex.applicationCommandId] = metaIndex
+            latest[metaIndex.applicationCommandId] = metaIndex
+        }
+
+        val names = NameIndex()
+        for (metaIndex in latest.values) {
+            names.add(metaIndex)
+        }
+
+        lock.withLock {
+            indexes.replaceAll(latest.values) { it.applicationCommandId }
+            this.names = names
         }
     }
 
-    override fun all(): List<NexusMetaIndex> = indexes.values.toList()
+    override fun all(): List<NexusMetaIndex> = indexes.values()
 
-    override fun clear() {
+    /**
+     * Gets the amount of indexes in the store without creating a snapshot.
+     */
+    internal val size: Int get() = indexes.size
+
+    override fun clear() = lock.withLock {
         indexes.clear()
+        names = NameIndex()
+    }
+
+    /**
+     * The secondary index of the store which is keyed by the command and the server, the global commands are kept
+     * separately from the server commands so that neither lookup has to allocate a composite key.
+     */
+    private class NameIndex {
+        private val global = ConcurrentHashMap<String, NexusMetaIndex>()
+        private val servers = ConcurrentHashMap<String, NexusConcurrentLongMap<NexusMetaIndex>>()
+
+        operator fun get(command: String, server: Long?): NexusMetaIndex? {
+            if (server == null) return global[command]
+            return servers[command]?.get(server)
+        }
+
+        fun add(metaIndex: NexusMetaIndex) {
+            val server = metaIndex.server
+            if (server == null) {
+                global[metaIndex.command] = metaIndex
+                return
+            }
+
+            servers.computeIfAbsent(metaIndex.command) { NexusConcurrentLongMap() }[server] = metaIndex
+        }
+
+        fun remove(metaIndex: NexusMetaIndex) {
+            val server = metaIndex.server
+            if (server == null) {
+                global.remove(metaIndex.command, metaIndex)
+                return
+            }
+
+            servers[metaIndex.command]?.remove(server, metaIndex)
+        }
     }
-}
\ No newline at end of file
+}
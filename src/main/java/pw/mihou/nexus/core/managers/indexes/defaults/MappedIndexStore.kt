@@ -0,0 +1,237 @@
+package pw.mihou.nexus.core.managers.indexes.defaults
+
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.managers.indexes.IndexStore
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import java.io.Closeable
+import java.io.IOException
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * An [IndexStore] that persists the indexes into a compact binary file, this allows a restarted bot to resolve the
+ * application command identifiers immediately without having to call [pw.mihou.nexus.core.managers.facade.NexusCommandManager.index]
+ * or fall back to resolving commands by their name.
+ *
+ * The file is read through its [FileChannel] once when the store is created and all lookups are then served from
+ * memory. A file whose header is incomplete or unknown is discarded, and a file that ends with an incomplete or damaged
+ * record is truncated after its last intact record.
+ *
+ * Changes are appended to the end of the file, which means that overwritten indexes remain in the file as garbage until
+ * the store compacts the file, this happens once the garbage exceeds the [compactionThreshold] and whenever the indexes
+ * are cleared or replaced.
+ *
+ * Appended records are not forced onto the disk, they survive the process restarting but not necessarily the machine
+ * losing power, in which case the store simply reads until the last complete record.
+ *
+ * @param path the path of the file that the indexes are persisted into.
+ * @param compactionThreshold the amount of overwritten records that the file can contain before it is compacted.
+ */
+class MappedIndexStore @JvmOverloads @Throws(IOException::class) constructor(
+    private val path: Path,
+    private val compactionThreshold: Int = 1024
+): IndexStore, Closeable {
+
+    private val memory = InMemoryIndexStore()
+    private val lock = ReentrantLock()
+
+    private var channel: FileChannel
+    private var records = 0
+
+    companion object {
+        private const val MAGIC = 0x4E584958 // NXIX
+        private const val VERSION: Byte = 1
+        private const val HEADER_SIZE = 5
+
+        private const val FLAG_GLOBAL: Byte = 0
+        private const val FLAG_SERVER: Byte = 1
+    }
+
+    init {
+        require(compactionThreshold >= 0) { "The compaction threshold of the index store must not be negative." }
+        path.toAbsolutePath().parent?.let { Files.createDirectories(it) }
+
+        channel = open(path)
+        if (channel.size() == 0L) {
+            channel.write(header(), 0)
+            channel.position(HEADER_SIZE.toLong())
+        } else {
+            load()
+        }
+    }
+
+    override fun add(metaIndex: NexusMetaIndex) = lock.withLock {
+        memory.add(metaIndex)
+        append(listOf(metaIndex))
+    }
+
+    override operator fun get(applicationCommandId: Long): NexusMetaIndex? = memory[applicationCommandId]
+    override fun get(command: String, server: Long?): NexusMetaIndex? = memory[command, server]
+
+    override fun many(vararg applicationCommandIds: Long): List<NexusMetaIndex> = memory.many(*applicationCommandIds)
+    override fun many(server: Long?, vararg names: String): List<NexusMetaIndex> = memory.many(server, *names)
+
+    override fun addAll(metaIndexes: List<NexusMetaIndex>) = lock.withLock {
+        memory.addAll(metaIndexes)
+        append(metaIndexes)
+    }
+
+    override fun replaceAll(metaIndexes: List<NexusMetaIndex>) = lock.withLock {
+        memory.replaceAll(metaIndexes)
+        compact()
+    }
+
+    override fun all(): List<NexusMetaIndex> = memory.all()
+
+    override fun clear() = lock.withLock {
+        memory.clear()
+        compact()
+    }
+
+    /**
+     * Rewrites the file with only the indexes that are currently known, dropping all the overwritten records. This is
+     * done automatically by the store, but can be called manually, for example, before shutting down.
+     */
+    fun compact() = lock.withLock {
+        val indexes = memory.all()
+        val temporary = path.resolveSibling(path.fileName.toString() + ".compact")
+
+        try {
+            open(temporary).use { compacted ->
+                compacted.truncate(0)
+                compacted.write(header(), 0)
+                compacted.position(HEADER_SIZE.toLong())
+                write(compacted, indexes)
+                compacted.force(true)
+            }
+
+            channel.close()
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            channel = open(path)
+            channel.position(channel.size())
+            records = indexes.size
+        } catch (exception: IOException) {
+            Nexus.logger.error("Failed to compact the index store at $path, the overwritten indexes will remain in the file.", exception)
+            if (!channel.isOpen) {
+                channel = open(path)
+                channel.position(channel.size())
+            }
+        }
+    }
+
+    override fun close() = lock.withLock {
+        channel.close()
+    }
+
+    private fun open(path: Path) = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+
+    private fun header(): ByteBuffer = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).flip()
+
+    private fun load() {
+        val size = channel.size()
+        val buffer = read(size)
+
+        if (size < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            Nexus.logger.warn("The index store at $path has an incomplete or unknown header, the file will be discarded.")
+            channel.truncate(0)
+            channel.write(header(), 0)
+            channel.position(HEADER_SIZE.toLong())
+            return
+        }
+
+        val indexes = mutableListOf<NexusMetaIndex>()
+        var position = buffer.position()
+        while (buffer.hasRemaining()) {
+            try {
+                val applicationCommandId = buffer.getLong()
+                val flag = buffer.get()
+                if (flag != FLAG_GLOBAL && flag != FLAG_SERVER) {
+                    Nexus.logger.warn("The index store at $path contains a damaged record, the records from it onwards will be discarded.")
+                    break
+                }
+
+                val serverId = buffer.getLong()
+                val server = if (flag == FLAG_SERVER) serverId else null
+                val command = ByteArray(buffer.getShort().toInt() and 0xFFFF)
+                buffer.get(command)
+
+                indexes.add(NexusMetaIndex(command = String(command, Charsets.UTF_8), applicationCommandId = applicationCommandId, server = server))
+                position = buffer.position()
+            } catch (exception: BufferUnderflowException) {
+                Nexus.logger.warn("The index store at $path ends with an incomplete record, the incomplete record will be discarded.")
+                break
+            }
+        }
+
+        if (position < size) {
+            channel.truncate(position.toLong())
+        }
+        channel.position(position.toLong())
+
+        memory.replaceAll(indexes)
+        records = indexes.size
+        if (records - memory.size > compactionThreshold) {
+            compact()
+        }
+    }
+
+    /**
+     * Reads the whole file onto the heap, the records are only read once when the store is created and are then served
+     * from memory, therefore, the file is never kept mapped and can be truncated or replaced at any time.
+     *
+     * @param size the size of the file.
+     * @return the contents of the file.
+     */
+    private fun read(size: Long): ByteBuffer {
+        val contents = ByteBuffer.allocate(size.toInt())
+        while (contents.hasRemaining()) {
+            if (channel.read(contents, contents.position().toLong()) < 0) break
+        }
+        return contents.flip()
+    }
+
+    private fun append(indexes: List<NexusMetaIndex>) {
+        try {
+            write(channel, indexes)
+            records += indexes.size
+        } catch (exception: IOException) {
+            Nexus.logger.error("Failed to persist ${indexes.size} indexes into the index store at $path, these will only be kept in memory.", exception)
+            return
+        }
+
+        if (records - memory.size > compactionThreshold) {
+            compact()
+        }
+    }
+
+    private fun write(channel: FileChannel, indexes: List<NexusMetaIndex>) {
+        if (indexes.isEmpty()) return
+
+        val encoded = indexes.map { it.command.toByteArray(Charsets.UTF_8) }
+        val buffer = ByteBuffer.allocate(encoded.sumOf { Long.SIZE_BYTES + 1 + Long.SIZE_BYTES + Short.SIZE_BYTES + it.size })
+        for ((index, command) in indexes.zip(encoded)) {
+            require(command.size <= 0xFFFF) { "The command ${index.command} is too long to be persisted into the index store." }
+
+            buffer.putLong(index.applicationCommandId)
+            if (index.server == null) {
+                buffer.put(FLAG_GLOBAL).putLong(0)
+            } else {
+                buffer.put(FLAG_SERVER).putLong(index.server)
+            }
+            buffer.putShort(command.size.toShort())
+            buffer.put(command)
+        }
+
+        buffer.flip()
+        while (buffer.hasRemaining()) {
+            channel.write(buffer)
+        }
+    }
+}
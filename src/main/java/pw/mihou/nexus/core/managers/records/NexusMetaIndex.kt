@@ -5,6 +5,16 @@ import pw.mihou.nexus.features.command.facade.NexusCommand
 import pw.mihou.nexus.features.contexts.NexusContextMenu
 
 data class NexusMetaIndex(val command: String, val applicationCommandId: Long, val server: Long?) {
+    @Transient @Volatile private var mentionTag: String? = null
+
     fun takeCommand(): NexusCommand? = Nexus.commandManager[command]
     fun takeContextMenu(): NexusContextMenu? = Nexus.commandManager.getContextMenu(command)
+
+    /**
+     * Gets the mention tag of the command, this is memoized since an index never changes, instead, the store replaces
+     * the index whenever the command is re-indexed which discards the memoized mention tag with it.
+     *
+     * @return the mention tag of the command.
+     */
+    fun mention(): String = mentionTag ?: "</$command:$applicationCommandId>".also { mentionTag = it }
 }
@@ -0,0 +1,90 @@
+package pw.mihou.nexus.core.threadpool
+
+import org.javacord.api.interaction.InteractionBase
+import pw.mihou.nexus.configuration.modules.NexusLaunchTask
+import pw.mihou.nexus.configuration.modules.NexusLaunchWrapper
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A [NexusLaunchWrapper] that is backed by a fixed amount of threads and a bounded queue, unlike the default launcher
+ * which spawns a new thread for every task when all threads are busy. When both the threads and the queue are saturated,
+ * the task is handed to the [NexusRejectionPolicy] instead.
+ *
+ * Be careful with [NexusRejectionPolicies] that drop tasks as internal tasks (e.g. Express requests) are also launched
+ * through the launcher, and tasks that block on other tasks of the same launcher can starve the pool when the
+ * concurrency is too low.
+ *
+ * @param concurrency the maximum amount of threads that can execute tasks at the same time.
+ * @param queueCapacity the maximum amount of tasks that can wait for a thread.
+ * @param policy the policy to use when the launcher is saturated.
+ */
+class NexusBoundedLauncher(
+    concurrency: Int,
+    queueCapacity: Int,
+    @Volatile var policy: NexusRejectionPolicy = NexusRejectionPolicies.CALLER_RUNS
+): NexusLaunchWrapper {
+
+    private val executor = ThreadPoolExecutor(
+        concurrency, concurrency, KEEP_ALIVE_TIME, TimeUnit.SECONDS, ArrayBlockingQueue(queueCapacity),
+        ThreadFactory("Nexus.Executor (Bounded): %d", false),
+        ThreadPoolExecutor.AbortPolicy()
+    ).apply { allowCoreThreadTimeOut(true) }
+
+    private val rejectedCounter = LongAdder()
+    private val droppedCounter = LongAdder()
+    private val callerRanCounter = LongAdder()
+
+    companion object {
+        private const val KEEP_ALIVE_TIME = 120L
+    }
+
+    /**
+     * Gets the amount of tasks that are waiting in the queue for a thread.
+     */
+    val queueDepth: Int get() = executor.queue.size
+
+    /**
+     * Gets the amount of threads that are actively executing tasks.
+     */
+    val active: Int get() = executor.activeCount
+
+    /**
+     * Gets the total amount of tasks that were rejected due to saturation, this includes both [dropped] and [callerRan].
+     */
+    val rejected: Long get() = rejectedCounter.sum()
+
+    /**
+     * Gets the total amount of rejected tasks that were discarded by the [policy].
+     */
+    val dropped: Long get() = droppedCounter.sum()
+
+    /**
+     * Gets the total amount of rejected tasks that were executed on the caller by the [policy].
+     */
+    val callerRan: Long get() = callerRanCounter.sum()
+
+    override fun launch(task: NexusLaunchTask) = launch(null, task)
+
+    override fun launch(interaction: InteractionBase?, task: NexusLaunchTask) {
+        try {
+            executor.execute { task.run() }
+        } catch (exception: RejectedExecutionException) {
+            rejectedCounter.increment()
+            when (policy.onRejected(task, interaction)) {
+                NexusRejectionOutcome.DROPPED -> droppedCounter.increment()
+                NexusRejectionOutcome.CALLER_RAN -> callerRanCounter.increment()
+            }
+        }
+    }
+
+    /**
+     * Shuts down the underlying executor, the tasks that are already queued will still be executed.
+     */
+    fun shutdown() {
+        executor.shutdown()
+    }
+}
@@ -0,0 +1,102 @@
+package pw.mihou.nexus.core.threadpool
+
+import org.javacord.api.entity.message.MessageFlag
+import org.javacord.api.interaction.InteractionBase
+import org.javacord.api.util.logging.ExceptionLogger
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.configuration.modules.NexusLaunchTask
+import pw.mihou.nexus.features.messages.NexusMessage
+import java.time.Instant
+
+/**
+ * A rejection policy decides what happens to a task when the [NexusBoundedLauncher] is saturated, that is, when
+ * all the threads are busy and the queue is full.
+ *
+ * Interactions are only handed to the policy when they are admitted, which is before the middlewares are executed
+ * and before the interaction is deferred, therefore, the interaction is never acknowledged and is still within the
+ * initial response window that Discord gives to it.
+ */
+fun interface NexusRejectionPolicy {
+
+    /**
+     * Handles a task that was rejected by the launcher.
+     *
+     * @param task the task that was rejected.
+     * @param interaction the interaction that the task is responding to, if any, this is never acknowledged.
+     * @return the outcome of the rejection, used for the counters of the launcher.
+     */
+    fun onRejected(task: NexusLaunchTask, interaction: InteractionBase?): NexusRejectionOutcome
+
+}
+
+enum class NexusRejectionOutcome {
+    /**
+     * The task was executed on the thread that tried to launch it.
+     */
+    CALLER_RAN,
+
+    /**
+     * The task was discarded without being executed.
+     */
+    DROPPED
+}
+
+object NexusRejectionPolicies {
+
+    /**
+     * Runs the rejected task on the thread that tried to launch it, this slows down the caller (e.g. the gateway
+     * thread) which naturally applies backpressure onto the source of the tasks.
+     */
+    @JvmField
+    val CALLER_RUNS = NexusRejectionPolicy { task, _ ->
+        task.run()
+        NexusRejectionOutcome.CALLER_RAN
+    }
+
+    /**
+     * Drops the rejected task if the interaction that it is responding to is already past its auto-defer deadline
+     * ([pw.mihou.nexus.configuration.modules.NexusGlobalConfiguration.autoDeferAfterMilliseconds]), since it
+     * is unlikely that the response will reach Discord in time. Otherwise, and for tasks without an interaction, the
+     * task is run on the caller.
+     *
+     * The deadline only applies to interactions that were not acknowledged, which is the case for every interaction
+     * that is handed to a policy, since a dropped command is never dispatched, the interaction is simply left to expire.
+     */
+    @JvmField
+    val DROP_IF_EXPIRED = NexusRejectionPolicy { task, interaction ->
+        if (interaction != null) {
+            val deadline = interaction.creationTimestamp.plusMillis(Nexus.configuration.global.autoDeferAfterMilliseconds)
+            if (Instant.now().isAfter(deadline)) {
+                return@NexusRejectionPolicy NexusRejectionOutcome.DROPPED
+            }
+        }
+
+        CALLER_RUNS.onRejected(task, interaction)
+    }
+
+    /**
+     * Responds to the interaction with the given message (forced as ephemeral) and drops the rejected task. Tasks
+     * without an interaction, such as internal tasks, are run on the caller instead since they cannot be answered.
+     *
+     * @param message the message to respond with.
+     * @return the rejection policy.
+     */
+    @JvmStatic
+    fun respond(message: NexusMessage) = NexusRejectionPolicy { task, interaction ->
+        if (interaction == null) {
+            return@NexusRejectionPolicy CALLER_RUNS.onRejected(task, null)
+        }
+
+        message.into(interaction.createImmediateResponder().setFlags(MessageFlag.EPHEMERAL))
+            .respond()
+            .exceptionally(ExceptionLogger.get())
+        NexusRejectionOutcome.DROPPED
+    }
+
+    /**
+     * Responds to the interaction with a generic busy message, see [respond] for more details.
+     */
+    @JvmField
+    val RESPOND_BUSY = respond(NexusMessage.from("We are currently experiencing a high volume of requests, please try again in a few moments.", true))
+
+}
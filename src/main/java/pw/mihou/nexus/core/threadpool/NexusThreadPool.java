@@ -1,5 +1,7 @@
 package pw.mihou.nexus.core.threadpool;
 
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
 import java.util.concurrent.*;
 
 public class NexusThreadPool {
@@ -14,8 +16,94 @@ public class NexusThreadPool {
             CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_TIME, TIME_UNIT, new SynchronousQueue<>(),
             new ThreadFactory("Nexus.Executor: %d", false));
 
+    private static volatile ExecutorService virtualExecutorService;
+    private static volatile ScheduledExecutorService virtualScheduledExecutorService;
+
     public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit measurement) {
         return scheduledExecutorService.schedule(task, delay, measurement);
     }
 
+    /**
+     * Gets the {@link ExecutorService} that starts a new virtual thread for each task, this is created lazily
+     * and is only available on JVMs that support virtual threads (JDK 21 and above).
+     *
+     * @return the virtual thread executor, or null if the JVM doesn't support virtual threads.
+     */
+    @Nullable
+    public static ExecutorService virtualExecutorService() {
+        if (virtualExecutorService == null) {
+            synchronized (NexusThreadPool.class) {
+                if (virtualExecutorService == null) {
+                    java.util.concurrent.ThreadFactory factory = virtualThreadFactory("Nexus.Executor (Virtual): ");
+                    if (factory == null) return null;
+
+                    try {
+                        Method method = Executors.class.getMethod("newThreadPerTaskExecutor", java.util.concurrent.ThreadFactory.class);
+                        virtualExecutorService = (ExecutorService) method.invoke(null, factory);
+                    } catch (ReflectiveOperationException exception) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return virtualExecutorService;
+    }
+
+    /**
+     * Gets the {@link ScheduledExecutorService} whose timer thread is a virtual thread, this is created lazily
+     * and is only available on JVMs that support virtual threads (JDK 21 and above).
+     *
+     * @return the virtual thread scheduler, or null if the JVM doesn't support virtual threads.
+     */
+    @Nullable
+    public static ScheduledExecutorService virtualScheduledExecutorService() {
+        if (virtualScheduledExecutorService == null) {
+            synchronized (NexusThreadPool.class) {
+                if (virtualScheduledExecutorService == null) {
+                    java.util.concurrent.ThreadFactory factory = virtualThreadFactory("Nexus.Scheduler (Virtual): ");
+                    if (factory == null) return null;
+
+                    virtualScheduledExecutorService = Executors.newScheduledThreadPool(CORE_POOL_SIZE, factory);
+                }
+            }
+        }
+        return virtualScheduledExecutorService;
+    }
+
+    /**
+     * Checks whether the JVM supports virtual threads (JDK 21 and above).
+     *
+     * @return whether the JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a virtual {@link java.util.concurrent.ThreadFactory} through reflection since Nexus is compiled
+     * against JDK 17, which doesn't have virtual threads.
+     *
+     * @param prefix the prefix of the thread names, the counter gets appended after it.
+     * @return the virtual thread factory, or null if the JVM doesn't support virtual threads.
+     */
+    @Nullable
+    private static java.util.concurrent.ThreadFactory virtualThreadFactory(String prefix) {
+        if (!isVirtualThreadsSupported()) return null;
+
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> clazz = Class.forName("java.lang.Thread$Builder$OfVirtual");
+
+            builder = clazz.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (java.util.concurrent.ThreadFactory) clazz.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+
 }
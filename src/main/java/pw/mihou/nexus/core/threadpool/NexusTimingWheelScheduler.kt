@@ -0,0 +1,241 @@
+package pw.mihou.nexus.core.threadpool
+
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.configuration.modules.Cancellable
+import pw.mihou.nexus.configuration.modules.NexusLaunchTask
+import pw.mihou.nexus.configuration.modules.NexusScheduledLaunchWrapper
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * A [NexusScheduledLaunchWrapper] that is backed by a hashed timing wheel, this is recommended for high-volume bots
+ * since nearly all the tasks that Nexus schedules (auto-defers, Express expirations) are cancelled before they
+ * run, and a timing wheel can schedule and cancel tasks in constant time without contending over a shared heap.
+ *
+ * The trade-off is precision: tasks are executed at the end of the tick that they fall in, which means that
+ * a task can run up to [tickInMillis] later than requested. Expired tasks are handed to [Nexus.launcher] so that
+ * a slow task cannot delay the wheel.
+ *
+ * @param tickInMillis the duration of one tick of the wheel in milliseconds.
+ * @param ticksPerWheel the amount of buckets in the wheel, this is rounded up to the next power of two.
+ */
+class NexusTimingWheelScheduler @JvmOverloads constructor(
+    private val tickInMillis: Long = 10,
+    ticksPerWheel: Int = 512
+): NexusScheduledLaunchWrapper {
+
+    private val tickInNanos = TimeUnit.MILLISECONDS.toNanos(tickInMillis)
+    private val wheel: Array<Bucket>
+    private val mask: Int
+
+    private val pending = ConcurrentLinkedQueue<Timeout>()
+    private val cancelled = ConcurrentLinkedQueue<Timeout>()
+
+    private val startTime = System.nanoTime()
+    @Volatile private var running = true
+    @Volatile private var draining = false
+
+    /**
+     * The amount of tasks that are placed in the wheel, this is only accessed by the worker thread.
+     */
+    private var scheduled = 0
+
+    /**
+     * The current tick of the wheel, this is only accessed by the worker thread.
+     */
+    private var tick = 0L
+    private val worker: Thread
+
+    companion object {
+        private const val MAXIMUM_TRANSFERS_PER_TICK = 100_000
+
+        private const val STATE_WAITING = 0
+        private const val STATE_CANCELLED = 1
+        private const val STATE_EXPIRED = 2
+    }
+
+    init {
+        require(tickInMillis > 0) { "The tick duration of the timing wheel must be greater than zero." }
+        require(ticksPerWheel in 1..(1 shl 30)) { "The ticks per wheel of the timing wheel must be between 1 and 2^30." }
+
+        var size = 1
+        while (size < ticksPerWheel) {
+            size = size shl 1
+        }
+
+        wheel = Array(size) { Bucket() }
+        mask = size - 1
+        worker = ThreadFactory("Nexus.TimingWheel: %d", false).newThread(::work)
+        worker.start()
+    }
+
+    override fun launch(timeInMillis: Long, task: NexusLaunchTask): Cancellable {
+        val deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(timeInMillis.coerceAtLeast(0))
+        val timeout = Timeout(task, deadline)
+        pending.add(timeout)
+        return timeout
+    }
+
+    /**
+     * Gets the amount of tasks that were scheduled, but not yet placed into the wheel by the worker thread.
+     */
+    val pendingSize: Int get() = pending.size
+
+    /**
+     * Stops the worker thread of the wheel, all the tasks that were not yet executed will never be executed.
+     */
+    fun shutdown() {
+        running = false
+        LockSupport.unpark(worker)
+    }
+
+    /**
+     * Stops the worker thread of the wheel once all the tasks that were scheduled before this call were either
+     * executed or cancelled, this is used when the wheel is replaced so that the tasks that are still pending
+     * (auto-defers, Express expirations) are not dropped. Tasks scheduled after this call are not guaranteed to run.
+     */
+    fun shutdownGracefully() {
+        draining = true
+        LockSupport.unpark(worker)
+    }
+
+    private fun work() {
+        while (running) {
+            val deadline = tickInNanos * (tick + 1)
+
+            var sleep = deadline - (System.nanoTime() - startTime)
+            while (sleep > 0) {
+                LockSupport.parkNanos(this, sleep)
+                if (!running) return
+                sleep = deadline - (System.nanoTime() - startTime)
+            }
+
+            purgeCancelled()
+            transferPending()
+
+            wheel[(tick and mask.toLong()).toInt()].expire()
+            tick++
+
+            if (draining && scheduled == 0 && pending.isEmpty()) {
+                running = false
+            }
+        }
+    }
+
+    private fun purgeCancelled() {
+        while (true) {
+            val timeout = cancelled.poll() ?: return
+            timeout.bucket?.remove(timeout)
+        }
+    }
+
+    private fun transferPending() {
+        for (i in 0 until MAXIMUM_TRANSFERS_PER_TICK) {
+            val timeout = pending.poll() ?: return
+            if (timeout.state.get() != STATE_WAITING) continue
+
+            val calculated = timeout.deadline / tickInNanos
+            timeout.rounds = (calculated - tick) / wheel.size
+
+            val ticks = calculated.coerceAtLeast(tick)
+            wheel[(ticks and mask.toLong()).toInt()].add(timeout)
+        }
+    }
+
+    private inner class Timeout(val task: NexusLaunchTask, val deadline: Long): Cancellable {
+        val state = AtomicInteger(STATE_WAITING)
+        var rounds = 0L
+
+        var bucket: Bucket? = null
+        var previous: Timeout? = null
+        var next: Timeout? = null
+
+        override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+            if (!state.compareAndSet(STATE_WAITING, STATE_CANCELLED)) {
+                return false
+            }
+
+            cancelled.add(this)
+            return true
+        }
+
+        fun expire() {
+            if (!state.compareAndSet(STATE_WAITING, STATE_EXPIRED)) {
+                return
+            }
+
+            Nexus.launcher.launch {
+                try {
+                    task.run()
+                } catch (exception: Exception) {
+                    Nexus.logger.error("An uncaught exception was caught by a task scheduled in Nexus' timing wheel.", exception)
+                }
+            }
+        }
+    }
+
+    /**
+     * A bucket is a doubly-linked list of the [Timeout]s that fall into one tick of the wheel, this allows the
+     * cancelled timeouts to be unlinked in constant time. Buckets are only accessed by the worker thread.
+     */
+    private inner class Bucket {
+        private var head: Timeout? = null
+        private var tail: Timeout? = null
+
+        fun add(timeout: Timeout) {
+            scheduled++
+            timeout.bucket = this
+            if (head == null) {
+                head = timeout
+                tail = timeout
+            } else {
+                tail!!.next = timeout
+                timeout.previous = tail
+                tail = timeout
+            }
+        }
+
+        fun remove(timeout: Timeout): Timeout? {
+            val next = timeout.next
+            if (timeout.previous != null) {
+                timeout.previous!!.next = next
+            }
+            if (next != null) {
+                next.previous = timeout.previous
+            }
+
+            if (timeout === head) {
+                if (timeout === tail) {
+                    head = null
+                    tail = null
+                } else {
+                    head = next
+                }
+            } else if (timeout === tail) {
+                tail = timeout.previous
+            }
+
+            timeout.previous = null
+            timeout.next = null
+            timeout.bucket = null
+            scheduled--
+            return next
+        }
+
+        fun expire() {
+            var timeout = head
+            while (timeout != null) {
+                if (timeout.rounds <= 0) {
+                    val next = remove(timeout)
+                    timeout.expire()
+                    timeout = next
+                } else {
+                    timeout.rounds--
+                    timeout = timeout.next
+                }
+            }
+        }
+    }
+}
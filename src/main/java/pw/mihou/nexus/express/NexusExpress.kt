@@ -3,6 +3,9 @@ package pw.mihou.nexus.express
 import org.javacord.api.DiscordApi
 import org.javacord.api.entity.server.Server
 import pw.mihou.nexus.express.event.NexusExpressEvent
+import pw.mihou.nexus.express.records.NexusExpressBatchResult
+import pw.mihou.nexus.express.records.NexusExpressShardStatistics
+import pw.mihou.nexus.express.request.NexusExpressBatchRequest
 import pw.mihou.nexus.express.request.NexusExpressRequest
 import java.util.concurrent.CompletableFuture
 import java.util.function.Consumer
@@ -84,4 +87,28 @@ interface NexusExpress {
      */
     fun broadcast(event: Consumer<DiscordApi>)
 
+    /**
+     * Executes the request for many servers at once, the servers are grouped by the shard that is responsible for them
+     * and the request is executed once for each shard with the servers of that shard as soon as the shard is available.
+     * This uses a single waiter for each shard instead of one for each server, which is the better choice for running a
+     * task over thousands of servers.
+     *
+     * When the total amount of shards isn't known yet, that is, it wasn't registered and no shard is connected, the
+     * servers are grouped once the first shard is available.
+     *
+     * @param servers the servers to execute the request for.
+     * @param request the request to execute for each shard.
+     * @return a future that completes with the result of every server once every shard has executed the request.
+     */
+    fun <Result: Any> batch(servers: Collection<Long>, request: NexusExpressBatchRequest<Result>): CompletableFuture<NexusExpressBatchResult<Result>>
+
+    /**
+     * Gets the statistics of the express requests of the shard, such as the amount of requests that are waiting for
+     * the shard, how long the requests waited before being dispatched and how many expired.
+     *
+     * @param shard the number of the shard.
+     * @return the statistics of the shard at this moment.
+     */
+    fun statistics(shard: Int): NexusExpressShardStatistics
+
 }
\ No newline at end of file
@@ -8,108 +8,216 @@ import pw.mihou.nexus.express.NexusExpress
 import pw.mihou.nexus.express.event.NexusExpressEvent
 import pw.mihou.nexus.express.event.core.NexusExpressEventCore
 import pw.mihou.nexus.express.event.status.NexusExpressEventStatus
+import pw.mihou.nexus.express.records.NexusExpressBatchResult
+import pw.mihou.nexus.express.records.NexusExpressShardStatistics
+import pw.mihou.nexus.express.request.NexusExpressBatchRequest
 import pw.mihou.nexus.express.request.NexusExpressRequest
 import java.util.concurrent.*
-import java.util.concurrent.locks.ReentrantLock
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
 import java.util.function.Consumer
 import java.util.function.Predicate
-import kotlin.concurrent.withLock
 
 internal class NexusExpressCore: NexusExpress {
 
-    private val globalQueue: BlockingQueue<NexusExpressEvent> = LinkedBlockingQueue()
-    private val predicateQueue: BlockingQueue<Pair<Predicate<DiscordApi>, NexusExpressEvent>> = LinkedBlockingQueue()
-
-    private val predicateQueueProcessingLock = ReentrantLock()
-    private val globalQueueProcessingLock = ReentrantLock()
-
-    private val localQueue: MutableMap<Int, BlockingQueue<NexusExpressEvent>> = ConcurrentHashMap()
+    /**
+     * All the queues unlink their requests in constant time once the request is cancelled or expires, therefore, a
+     * shard that is down for a long time doesn't make each expiry scan every other waiting request.
+     */
+    private val globalQueue = NexusExpressQueue<NexusExpressEventCore>()
+    private val predicateQueue = NexusExpressQueue<Pair<Predicate<DiscordApi>, NexusExpressEventCore>>()
+
+    private val localQueue: MutableMap<Int, NexusExpressQueue<NexusExpressEventCore>> = ConcurrentHashMap()
+
+    /**
+     * The requests that are waiting for a specific server, indexed by the server so that a shard (or a server that
+     * becomes available) only has to look up its own servers instead of testing every waiting request.
+     */
+    private val serverQueue: MutableMap<Long, NexusExpressQueue<NexusExpressEventCore>> = ConcurrentHashMap()
+    private val counters: MutableMap<Int, ShardCounters> = ConcurrentHashMap()
+
+    /**
+     * The futures of [await] that are still waiting, concurrent awaits for the same shard or server share the same
+     * future, express request and expiry instead of queueing their own. Each caller receives a copy of the shared
+     * future so that completing or cancelling one copy doesn't affect the other callers.
+     */
+    private val pendingShards: MutableMap<Int, CompletableFuture<DiscordApi>> = ConcurrentHashMap()
+    private val pendingServers: MutableMap<Long, CompletableFuture<Server>> = ConcurrentHashMap()
+
+    private class ShardCounters {
+        val inFlight = AtomicInteger()
+        val dispatched = LongAdder()
+        val expired = LongAdder()
+        val waitedInNanoseconds = LongAdder()
+        val maximumWaitInNanoseconds = AtomicLong()
+    }
 
     fun ready(shard: DiscordApi) {
         Nexus.launcher.launch {
             val local = localQueue(shard.currentShard)
-            while (!local.isEmpty()) {
+            while (true) {
                 try {
-                    val event = local.poll()
-
-                    if (event != null) {
-                        Nexus.launcher.launch {
-                            (event as NexusExpressEventCore).process(shard)
-                        }
-                    }
+                    val event = local.poll() ?: break
+                    dispatch(event, shard)
                 } catch (exception: Exception) {
                     Nexus.logger.error("An uncaught exception was caught from Nexus Express Way.", exception)
                 }
             }
 
-            predicateQueueProcessingLock.withLock {
-                while (!predicateQueue.isEmpty()) {
-                    try {
-                        val (predicate, _) = predicateQueue.peek()
+            if (serverQueue.isNotEmpty()) {
+                for (server in shard.servers) {
+                    ready(server.id, shard)
+                }
+            }
 
-                        if (!predicate.test(shard)) continue
-                        val (_, event) = predicateQueue.poll()
+            for (node in predicateQueue.nodes()) {
+                try {
+                    val (predicate, event) = node.value
+                    if (!predicate.test(shard) || !predicateQueue.unlink(node)) continue
 
-                        Nexus.launcher.launch {
-                            (event as NexusExpressEventCore).process(shard)
-                        }
-                    } catch (exception: Exception) {
-                        Nexus.logger.error("An uncaught exception was caught from Nexus Express Way.", exception)
-                    }
+                    dispatch(event, shard)
+                } catch (exception: Exception) {
+                    Nexus.logger.error("An uncaught exception was caught from Nexus Express Way.", exception)
                 }
             }
         }
 
         Nexus.launcher.launch {
-            globalQueueProcessingLock.withLock {
-                while(globalQueue.isNotEmpty()) {
-                    try {
-                        val event = globalQueue.poll()
-
-                        if (event != null) {
-                            Nexus.launcher.launch {
-                                (event as NexusExpressEventCore).process(shard)
-                            }
-                        }
-                    } catch (exception: Exception) {
-                        Nexus.logger.error("An uncaught exception was caught from Nexus Express Way.", exception)
-                    }
+            while (true) {
+                try {
+                    val event = globalQueue.poll() ?: break
+                    dispatch(event, shard)
+                } catch (exception: Exception) {
+                    Nexus.logger.error("An uncaught exception was caught from Nexus Express Way.", exception)
                 }
             }
         }
     }
 
-    private fun localQueue(shard: Int): BlockingQueue<NexusExpressEvent> {
-        return localQueue.computeIfAbsent(shard) { LinkedBlockingQueue() }
+    /**
+     * Dispatches all the requests that are waiting for the server onto the shard, this is called when the shard becomes
+     * ready and whenever the server joins or becomes available on a shard.
+     *
+     * @param server the server that is now available.
+     * @param shard the shard that is responsible for the server.
+     */
+    fun ready(server: Long, shard: DiscordApi) {
+        val waiting = serverQueue.remove(server) ?: return
+        while (true) {
+            val event = waiting.poll() ?: break
+            dispatch(event, shard)
+        }
+    }
+
+    private fun localQueue(shard: Int): NexusExpressQueue<NexusExpressEventCore> {
+        return localQueue.computeIfAbsent(shard) { NexusExpressQueue() }
+    }
+
+    private fun counters(shard: Int): ShardCounters = counters.computeIfAbsent(shard) { ShardCounters() }
+
+    /**
+     * Gets the amount of express requests that the shard is processing at the moment.
+     *
+     * @param shard the number of the shard.
+     * @return the amount of requests that the shard is processing.
+     */
+    internal fun inFlight(shard: Int): Int = counters[shard]?.inFlight?.get() ?: 0
+
+    override fun statistics(shard: Int): NexusExpressShardStatistics {
+        val counters = counters(shard)
+        var queued = localQueue[shard]?.size ?: 0
+        for ((server, queue) in serverQueue) {
+            if (Nexus.sharding.calculate(server) == shard) queued += queue.size
+        }
+
+        val dispatched = counters.dispatched.sum()
+        val waited = counters.waitedInNanoseconds.sum()
+        return NexusExpressShardStatistics(
+            shard = shard,
+            queued = queued,
+            inFlight = counters.inFlight.get(),
+            dispatched = dispatched,
+            expired = counters.expired.sum(),
+            averageWaitInMilliseconds = if (dispatched == 0L) 0.0 else waited.toDouble() / dispatched / 1_000_000.0,
+            maximumWaitInMilliseconds = counters.maximumWaitInNanoseconds.get() / 1_000_000.0
+        )
+    }
+
+    private fun dispatch(event: NexusExpressEventCore, shard: DiscordApi) {
+        // The event is claimed before it is counted, otherwise, a cancellation or expiration that wins the race would
+        // still be counted as dispatched.
+        if (!event.claim()) return
+
+        val counters = counters(shard.currentShard)
+        val waited = System.nanoTime() - event.createdAt
+        counters.dispatched.increment()
+        counters.waitedInNanoseconds.add(waited)
+        counters.maximumWaitInNanoseconds.accumulateAndGet(waited) { current, candidate -> maxOf(current, candidate) }
+
+        counters.inFlight.incrementAndGet()
+        Nexus.launcher.launch {
+            try {
+                event.execute(shard)
+            } finally {
+                counters.inFlight.decrementAndGet()
+            }
+        }
+    }
+
+    /**
+     * Expires the event once the maximum timeout is reached if it is still waiting by then, the event unlinks itself
+     * from its queue when it expires.
+     *
+     * @param event the event to expire.
+     * @param shard the shard that the event is counted against, if any.
+     * @param target the description of what the event is waiting for.
+     * @param reason the description of why the event expired.
+     */
+    private fun expireAfterTimeout(event: NexusExpressEventCore, shard: Int?, target: String, reason: String) {
+        val maximumTimeout = Nexus.configuration.express.maximumTimeout
+        if (maximumTimeout.isZero || maximumTimeout.isNegative) return
+
+        Nexus.launch.scheduler.launch(maximumTimeout.toMillis()) {
+            if (!event.expire()) return@launch
+
+            if (shard != null) counters(shard).expired.increment()
+            if (Nexus.configuration.express.showExpiredWarnings) {
+                Nexus.logger.warn(
+                    "An express request that was specified " +
+                            "for $target has expired after ${maximumTimeout.toMillis()} milliseconds $reason."
+                )
+            }
+        }
+    }
+
+    /**
+     * Selects the shard for a request that can be handled by any shard with the configured
+     * [pw.mihou.nexus.configuration.modules.NexusExpressConfiguration.shardSelector].
+     */
+    private fun select(): DiscordApi? {
+        val shards = Nexus.sharding.collection().toList()
+        if (shards.size <= 1) return shards.firstOrNull()
+
+        return try {
+            Nexus.configuration.express.shardSelector.select(shards)
+        } catch (exception: Exception) {
+            Nexus.logger.error("The shard selector of Nexus Express failed to select a shard, falling back to the first shard.", exception)
+            shards.first()
+        }
     }
 
     override fun queue(shard: Int, event: NexusExpressRequest): NexusExpressEvent {
         val expressEvent = NexusExpressEventCore(event)
 
         if (Nexus.sharding[shard] == null){
-            localQueue(shard).add(expressEvent)
-
-            val maximumTimeout = Nexus.configuration.express.maximumTimeout
-            if (!maximumTimeout.isZero && !maximumTimeout.isNegative) {
-                Nexus.launch.scheduler.launch(maximumTimeout.toMillis()) {
-                    expressEvent.`do` {
-                        if (status() == NexusExpressEventStatus.WAITING) {
-                            val removed = localQueue(shard).remove(this)
-                            if (Nexus.configuration.express.showExpiredWarnings) {
-                                Nexus.logger.warn(
-                                    "An express request that was specified " +
-                                            "for shard $shard has expired after ${maximumTimeout.toMillis()} milliseconds " +
-                                            "without the shard connecting with Nexus. [acknowledged=$removed]"
-                                )
-                            }
-
-                            expire()
-                        }
-                    }
-                }
-            }
+            val queue = localQueue(shard)
+            val node = queue.add(expressEvent)
+            expressEvent.detachWith { queue.unlink(node) }
+
+            expireAfterTimeout(expressEvent, shard, "shard $shard", "without the shard connecting with Nexus")
         } else {
-            Nexus.launcher.launch { expressEvent.process(Nexus.sharding[shard]!!) }
+            dispatch(expressEvent, Nexus.sharding[shard]!!)
         }
 
         return expressEvent
@@ -120,30 +228,12 @@ internal class NexusExpressCore: NexusExpress {
         val shard = Nexus.sharding.find { shard2 -> predicate.test(shard2) }
 
         if (shard == null){
-            val pair = predicate to expressEvent
-            predicateQueue.add(pair)
-
-            val maximumTimeout = Nexus.configuration.express.maximumTimeout
-            if (!maximumTimeout.isZero && !maximumTimeout.isNegative) {
-                Nexus.launch.scheduler.launch(maximumTimeout.toMillis()) {
-                    expressEvent.`do` {
-                        if (status() == NexusExpressEventStatus.WAITING) {
-                            val removed = predicateQueue.remove(pair)
-                            if (Nexus.configuration.express.showExpiredWarnings) {
-                                Nexus.logger.warn(
-                                        "An express request that was specified " +
-                                                "for a predicate has expired after ${maximumTimeout.toMillis()} milliseconds " +
-                                                "without any matching shard connecting with Nexus. [acknowledged=$removed]"
-                                )
-                            }
-
-                            expire()
-                        }
-                    }
-                }
-            }
+            val node = predicateQueue.add(predicate to expressEvent)
+            expressEvent.detachWith { predicateQueue.unlink(node) }
+
+            expireAfterTimeout(expressEvent, null, "a predicate", "without any matching shard connecting with Nexus")
         } else {
-            Nexus.launcher.launch { expressEvent.process(shard) }
+            dispatch(expressEvent, shard)
         }
 
         return expressEvent
@@ -152,30 +242,14 @@ internal class NexusExpressCore: NexusExpress {
     override fun queue(event: NexusExpressRequest): NexusExpressEvent {
         val expressEvent = NexusExpressEventCore(event)
 
-        if (Nexus.sharding.size == 0){
-            globalQueue.add(expressEvent)
-
-            val maximumTimeout = Nexus.configuration.express.maximumTimeout
-            if (!maximumTimeout.isZero && !maximumTimeout.isNegative) {
-                Nexus.launch.scheduler.launch(maximumTimeout.toMillis()) {
-                    expressEvent.`do` {
-                        if (status() == NexusExpressEventStatus.WAITING) {
-                            val removed = globalQueue.remove(this)
-                            if (Nexus.configuration.express.showExpiredWarnings) {
-                                Nexus.logger.warn(
-                                    "An express request that was specified " +
-                                            "for any available shards has expired after ${maximumTimeout.toMillis()} milliseconds " +
-                                            "without any shard connecting with Nexus. [acknowledged=$removed]"
-                                )
-                            }
-
-                            expire()
-                        }
-                    }
-                }
-            }
+        val shard = select()
+        if (shard == null){
+            val node = globalQueue.add(expressEvent)
+            expressEvent.detachWith { globalQueue.unlink(node) }
+
+            expireAfterTimeout(expressEvent, null, "any available shards", "without any shard connecting with Nexus")
         } else {
-            Nexus.launcher.launch { expressEvent.process(Nexus.sharding.collection().first()) }
+            dispatch(expressEvent, shard)
         }
 
         return expressEvent
@@ -189,9 +263,15 @@ internal class NexusExpressCore: NexusExpress {
         }
 
         val future = CompletableFuture<DiscordApi>()
+        val pending = pendingShards.putIfAbsent(shard, future)
+        if (pending != null) {
+            return pending.copy()
+        }
+
+        future.whenComplete { _, _ -> pendingShards.remove(shard, future) }
         failFutureOnExpire(queue(shard, future::complete), future)
 
-        return future
+        return future.copy()
     }
 
     override fun await(server: Long): CompletableFuture<Server> {
@@ -202,19 +282,61 @@ internal class NexusExpressCore: NexusExpress {
         }
 
         val future = CompletableFuture<Server>()
+        val pending = pendingServers.putIfAbsent(server, future)
+        if (pending != null) {
+            return pending.copy()
+        }
+
+        future.whenComplete { _, _ -> pendingServers.remove(server, future) }
         failFutureOnExpire(
-            queue(
-                { shard -> shard.getServerById(server).isPresent },
-                { shard -> future.complete(shard.getServerById(server).get()) }
-            ),
+            queue(server) { shard ->
+                val serverB = shard.getServerById(server).orElse(null)
+                if (serverB == null) {
+                    future.completeExceptionally(NexusFailedActionException("The server $server was not found on the shard ${shard.currentShard}."))
+                } else {
+                    future.complete(serverB)
+                }
+            },
             future
         )
 
-        return future
+        return future.copy()
+    }
+
+    /**
+     * Queues an event to be executed by the shard that is responsible for the server once the server is available, the
+     * request is registered by the server itself rather than as a predicate.
+     *
+     * @param server the server that the event is waiting for.
+     * @param event the event to execute.
+     * @return the controller and status viewer for the event.
+     */
+    private fun queue(server: Long, event: NexusExpressRequest): NexusExpressEvent {
+        val expressEvent = NexusExpressEventCore(event)
+
+        lateinit var queue: NexusExpressQueue<NexusExpressEventCore>
+        lateinit var node: NexusExpressQueue.Node<NexusExpressEventCore>
+        serverQueue.compute(server) { _, existing ->
+            (existing ?: NexusExpressQueue()).also {
+                queue = it
+                node = it.add(expressEvent)
+            }
+        }
+
+        expressEvent.detachWith {
+            queue.unlink(node)
+            serverQueue.computeIfPresent(server) { _, existing -> if (existing === queue && existing.isEmpty()) null else existing }
+        }
+
+        // The shard may have become ready between the caller's lookup and the registration.
+        Nexus.sharding.shard(server)?.let { shard -> ready(server, shard) }
+
+        expireAfterTimeout(expressEvent, Nexus.sharding.calculate(server), "server $server", "without the server becoming available")
+        return expressEvent
     }
 
     override fun awaitAvailable(): CompletableFuture<DiscordApi> {
-        val shardA = Nexus.sharding.collection().firstOrNull()
+        val shardA = select()
 
         if (shardA != null) {
             return CompletableFuture.completedFuture(shardA)
@@ -226,6 +348,36 @@ internal class NexusExpressCore: NexusExpress {
         return future
     }
 
+    /**
+     * Executes the task on the shard that is selected by [awaitAvailable] and counts it as in flight on that shard
+     * until the returned future completes, this is used by the work that Nexus itself sends to any shard (e.g. indexing
+     * and synchronizing) so that [pw.mihou.nexus.express.selection.NexusShardSelectors.leastInFlight] can see it.
+     *
+     * @param task the task to execute with the selected shard.
+     * @return the result of the task.
+     */
+    internal fun <T> withAvailable(task: (DiscordApi) -> CompletableFuture<T>): CompletableFuture<T> =
+        awaitAvailable().thenCompose { shard -> withShard(shard, task) }
+
+    /**
+     * Executes the task on the given shard and counts it as in flight on that shard until the returned future completes.
+     *
+     * @param shard the shard to execute the task with.
+     * @param task the task to execute with the shard.
+     * @return the result of the task.
+     */
+    internal fun <T> withShard(shard: DiscordApi, task: (DiscordApi) -> CompletableFuture<T>): CompletableFuture<T> {
+        val counters = counters(shard.currentShard)
+        counters.inFlight.incrementAndGet()
+
+        val future = try {
+            task(shard)
+        } catch (exception: Exception) {
+            CompletableFuture.failedFuture(exception)
+        }
+        return future.whenComplete { _, _ -> counters.inFlight.decrementAndGet() }
+    }
+
     override fun <U> failFutureOnExpire(event: NexusExpressEvent, future: CompletableFuture<U>) {
         event.addStatusChangeListener { _, _, newStatus ->
             if (newStatus == NexusExpressEventStatus.EXPIRED || newStatus == NexusExpressEventStatus.STOPPED) {
@@ -235,6 +387,67 @@ internal class NexusExpressCore: NexusExpress {
                 )
             }
         }
+
+        // The event may have been cancelled or expired before the listener was added.
+        val status = event.status()
+        if (status == NexusExpressEventStatus.EXPIRED || status == NexusExpressEventStatus.STOPPED) {
+            future.completeExceptionally(
+                NexusFailedActionException("Failed to connect with the shard that was being waited, it's possible " +
+                        "that the maximum timeout has been reached or the event has been somehow cancelled.")
+            )
+        }
+    }
+
+    override fun <Result: Any> batch(
+        servers: Collection<Long>,
+        request: NexusExpressBatchRequest<Result>
+    ): CompletableFuture<NexusExpressBatchResult<Result>> {
+        // The servers cannot be grouped by their shard until the total amount of shards is known, which is either
+        // registered or reported by the first shard that connects.
+        if (Nexus.sharding.totalShards <= 0) {
+            return awaitAvailable().thenCompose { batch(servers, request) }
+        }
+
+        val results = ConcurrentHashMap<Long, Result>()
+        val failures = ConcurrentHashMap<Long, Exception>()
+
+        val shards = servers.distinct().groupBy { server -> Nexus.sharding.calculate(server) }
+        val tasks = shards.map { (shard, shardServers) ->
+            await(shard)
+                .thenCompose { api -> execute(api, shardServers, request) }
+                .handle { shardResults, exception ->
+                    if (exception != null) {
+                        val cause = (exception as? CompletionException)?.cause ?: exception
+                        val failure = cause as? Exception ?: RuntimeException(cause)
+                        shardServers.forEach { server -> failures[server] = failure }
+                    } else {
+                        results.putAll(shardResults)
+                    }
+                }
+        }
+
+        return CompletableFuture.allOf(*tasks.toTypedArray()).thenApply { NexusExpressBatchResult(results, failures) }
+    }
+
+    private fun <Result: Any> execute(
+        shard: DiscordApi,
+        servers: List<Long>,
+        request: NexusExpressBatchRequest<Result>
+    ): CompletableFuture<Map<Long, Result>> {
+        val future = CompletableFuture<Map<Long, Result>>()
+        val counters = counters(shard.currentShard)
+
+        counters.inFlight.incrementAndGet()
+        Nexus.launcher.launch {
+            try {
+                future.complete(request.onEvent(shard, servers))
+            } catch (exception: Exception) {
+                future.completeExceptionally(exception)
+            } finally {
+                counters.inFlight.decrementAndGet()
+            }
+        }
+        return future
     }
 
     override fun broadcast(event: Consumer<DiscordApi>) {
@@ -0,0 +1,95 @@
+package pw.mihou.nexus.express.core
+
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * An intrusive, doubly-linked queue for the express requests that are waiting for a shard. Unlike a
+ * [java.util.concurrent.LinkedBlockingQueue], each value is given the [Node] that holds it, which allows a cancelled
+ * or expired request to be unlinked in constant time instead of scanning the queue for it.
+ */
+internal class NexusExpressQueue<T> {
+
+    class Node<T> internal constructor(@JvmField val value: T) {
+        internal var previous: Node<T>? = null
+        internal var next: Node<T>? = null
+        internal var linked = true
+    }
+
+    private var head: Node<T>? = null
+    private var tail: Node<T>? = null
+
+    private val lock = ReentrantLock()
+
+    @Volatile var size = 0
+        private set
+
+    fun isEmpty() = size == 0
+
+    /**
+     * Adds the value to the end of the queue.
+     *
+     * @param value the value to add.
+     * @return the node that can be used to [unlink] the value.
+     */
+    fun add(value: T): Node<T> = lock.withLock {
+        val node = Node(value)
+        val tail = tail
+
+        node.previous = tail
+        if (tail == null) head = node else tail.next = node
+        this.tail = node
+
+        size++
+        node
+    }
+
+    /**
+     * Removes the node from the queue if it is still in the queue.
+     *
+     * @param node the node to remove.
+     * @return whether the node was removed by this call.
+     */
+    fun unlink(node: Node<T>): Boolean = lock.withLock {
+        if (!node.linked) return false
+
+        val previous = node.previous
+        val next = node.next
+        if (previous == null) head = next else previous.next = next
+        if (next == null) tail = previous else next.previous = previous
+
+        node.previous = null
+        node.next = null
+        node.linked = false
+
+        size--
+        true
+    }
+
+    /**
+     * Removes the value at the front of the queue.
+     *
+     * @return the value at the front of the queue, if any.
+     */
+    fun poll(): T? = lock.withLock {
+        val head = head ?: return null
+        unlink(head)
+        head.value
+    }
+
+    /**
+     * Creates a snapshot of the nodes in the queue, this is used to test the values without holding the lock and
+     * [unlink] the matching nodes afterwards.
+     *
+     * @return the nodes in the queue.
+     */
+    fun nodes(): List<Node<T>> = lock.withLock {
+        val nodes = ArrayList<Node<T>>(size)
+        var node = head
+        while (node != null) {
+            nodes.add(node)
+            node = node.next
+        }
+        nodes
+    }
+}
@@ -6,69 +6,115 @@ import pw.mihou.nexus.express.event.NexusExpressEvent
 import pw.mihou.nexus.express.event.listeners.NexusExpressEventStatusChange
 import pw.mihou.nexus.express.event.status.NexusExpressEventStatus
 import pw.mihou.nexus.express.request.NexusExpressRequest
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicReference
 
+/**
+ * The status of an event only moves forward: from [NexusExpressEventStatus.WAITING] to either
+ * [NexusExpressEventStatus.PROCESSING] and then [NexusExpressEventStatus.FINISHED], or to [NexusExpressEventStatus.STOPPED]
+ * or [NexusExpressEventStatus.EXPIRED]. Every transition is a compare-and-set, therefore, exactly one of the competing
+ * transitions wins and neither the request nor the listeners are ever executed while holding a lock.
+ */
 internal class NexusExpressEventCore(val request: NexusExpressRequest): NexusExpressEvent {
 
-    @Volatile private var status = NexusExpressEventStatus.WAITING
-    private val listeners = mutableListOf<NexusExpressEventStatusChange>()
+    private val status = AtomicReference(NexusExpressEventStatus.WAITING)
+    private val listeners = ConcurrentLinkedQueue<NexusExpressEventStatusChange>()
+
+    /**
+     * The time, in [System.nanoTime], at which the event was created, this is used to measure how long the event
+     * waited before it was dispatched.
+     */
+    @JvmField internal val createdAt = System.nanoTime()
+
+    /**
+     * Unlinks the event from the queue that it is waiting in, this is called once when the event is cancelled or expires.
+     */
+    @Volatile private var detach: (() -> Unit)? = null
 
     override fun cancel() {
-        synchronized(this) {
-            if (status == NexusExpressEventStatus.WAITING) {
-                change(status = NexusExpressEventStatus.STOPPED)
-            }
-        }
+        transition(NexusExpressEventStatus.WAITING, NexusExpressEventStatus.STOPPED)
     }
 
-    fun expire() {
-        synchronized (this) {
-            if (status == NexusExpressEventStatus.WAITING) {
-                change(status = NexusExpressEventStatus.EXPIRED)
-            }
+    /**
+     * Expires the event if it is still waiting.
+     *
+     * @return whether the event was expired by this call.
+     */
+    fun expire(): Boolean = transition(NexusExpressEventStatus.WAITING, NexusExpressEventStatus.EXPIRED)
+
+    fun process(shard: DiscordApi) {
+        if (!claim()) {
+            return
         }
+
+        execute(shard)
     }
 
-    fun `do`(task: NexusExpressEventCore.() -> Unit) {
-        synchronized(this) {
-            task()
+    /**
+     * Claims the event for processing if it is still waiting, once claimed, the event can no longer be cancelled or
+     * expired and must be executed with [execute].
+     *
+     * @return whether the event was claimed by this call.
+     */
+    internal fun claim(): Boolean = transition(NexusExpressEventStatus.WAITING, NexusExpressEventStatus.PROCESSING)
+
+    /**
+     * Executes the request of an event that was claimed with [claim].
+     *
+     * @param shard the shard to execute the request with.
+     */
+    internal fun execute(shard: DiscordApi) {
+        try {
+            request.onEvent(shard)
+        } catch (exception: Exception) {
+            Nexus.configuration.global.logger.error("An uncaught exception was caught by Nexus Express Way.", exception)
+        } finally {
+            transition(NexusExpressEventStatus.PROCESSING, NexusExpressEventStatus.FINISHED)
         }
     }
 
-    fun process(shard: DiscordApi) {
-        synchronized(this) {
-            try {
-                if (status == NexusExpressEventStatus.STOPPED || status == NexusExpressEventStatus.EXPIRED) {
-                    return@synchronized
-                }
-
-                change(status = NexusExpressEventStatus.PROCESSING)
-                request.onEvent(shard)
-            } catch (exception: Exception) {
-                Nexus.configuration.global.logger.error("An uncaught exception was caught by Nexus Express Way.", exception)
-            } finally {
-                change(status = NexusExpressEventStatus.FINISHED)
-            }
+    /**
+     * Sets the action that unlinks the event from the queue that it is waiting in, if the event was already cancelled
+     * or expired then the action is executed immediately.
+     *
+     * @param action the action that unlinks the event.
+     */
+    internal fun detachWith(action: () -> Unit) {
+        detach = action
+        val current = status.get()
+        if (current == NexusExpressEventStatus.STOPPED || current == NexusExpressEventStatus.EXPIRED) {
+            detach()
         }
     }
 
-    private fun change(status: NexusExpressEventStatus) {
-        synchronized(this) {
-            val oldStatus = this.status
-            this.status = status
+    private fun detach() {
+        val action = detach ?: return
+        detach = null
+        action()
+    }
 
-            listeners.forEach { listener -> listener.onStatusChange(this, oldStatus, status) }
+    private fun transition(from: NexusExpressEventStatus, to: NexusExpressEventStatus): Boolean {
+        if (!status.compareAndSet(from, to)) {
+            return false
         }
-    }
 
-    override fun status(): NexusExpressEventStatus {
-        synchronized(this) {
-            return status
+        if (to == NexusExpressEventStatus.STOPPED || to == NexusExpressEventStatus.EXPIRED) {
+            detach()
         }
+
+        for (listener in listeners) {
+            try {
+                listener.onStatusChange(this, from, to)
+            } catch (exception: Exception) {
+                Nexus.logger.error("Caught an uncaught exception in a Express Way listener.", exception)
+            }
+        }
+        return true
     }
 
+    override fun status(): NexusExpressEventStatus = status.get()
+
     override fun addStatusChangeListener(event: NexusExpressEventStatusChange) {
-        synchronized(this) {
-            listeners.add(event)
-        }
+        listeners.add(event)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,10 @@
+package pw.mihou.nexus.express.records
+
+/**
+ * The results of a batch from [pw.mihou.nexus.express.NexusExpress.batch], each server is either in [results] or in
+ * [failures] unless the request left the server out of its results.
+ *
+ * @param results the result of each server that the request completed for.
+ * @param failures the exception of each server whose shard failed to connect or whose request failed.
+ */
+data class NexusExpressBatchResult<Result: Any>(val results: Map<Long, Result>, val failures: Map<Long, Exception>)
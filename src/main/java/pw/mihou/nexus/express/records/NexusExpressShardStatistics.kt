@@ -0,0 +1,23 @@
+package pw.mihou.nexus.express.records
+
+/**
+ * A snapshot of how the express requests of one shard are doing, this only counts the requests that were specified for
+ * the shard itself or for one of its servers, and the requests that were dispatched onto the shard.
+ *
+ * @param shard the number of the shard.
+ * @param queued the amount of requests that are waiting for the shard to connect.
+ * @param inFlight the amount of requests that the shard is processing at the moment.
+ * @param dispatched the amount of requests that were dispatched onto the shard.
+ * @param expired the amount of requests that expired while waiting for the shard.
+ * @param averageWaitInMilliseconds the average time that the dispatched requests waited before being dispatched.
+ * @param maximumWaitInMilliseconds the longest time that a dispatched request waited before being dispatched.
+ */
+data class NexusExpressShardStatistics(
+    val shard: Int,
+    val queued: Int,
+    val inFlight: Int,
+    val dispatched: Long,
+    val expired: Long,
+    val averageWaitInMilliseconds: Double,
+    val maximumWaitInMilliseconds: Double
+)
@@ -0,0 +1,16 @@
+package pw.mihou.nexus.express.request
+
+import org.javacord.api.DiscordApi
+
+fun interface NexusExpressBatchRequest<Result: Any> {
+
+    /**
+     * Executes the request for all the servers that the shard is responsible for in one go.
+     *
+     * @param shard the shard that is responsible for the servers.
+     * @param servers the servers of the batch that the shard is responsible for.
+     * @return the result of each server, servers that are left out are left out of the batch result as well.
+     */
+    fun onEvent(shard: DiscordApi, servers: List<Long>): Map<Long, Result>
+
+}
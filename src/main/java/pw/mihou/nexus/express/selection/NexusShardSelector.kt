@@ -0,0 +1,16 @@
+package pw.mihou.nexus.express.selection
+
+import org.javacord.api.DiscordApi
+
+fun interface NexusShardSelector {
+
+    /**
+     * Selects the shard that should handle a request that can be handled by any shard, such as
+     * [pw.mihou.nexus.express.NexusExpress.queue] without a shard or [pw.mihou.nexus.express.NexusExpress.awaitAvailable].
+     *
+     * @param shards the shards that are currently connected, this is never empty.
+     * @return the shard that should handle the request.
+     */
+    fun select(shards: List<DiscordApi>): DiscordApi
+
+}
@@ -0,0 +1,51 @@
+package pw.mihou.nexus.express.selection
+
+import org.javacord.api.DiscordApi
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.express.core.NexusExpressCore
+import java.util.concurrent.atomic.AtomicInteger
+
+object NexusShardSelectors {
+
+    /**
+     * Creates a selector that cycles through the connected shards, this spreads the requests evenly over the shards
+     * and their rate-limits.
+     *
+     * @return a new round-robin selector.
+     */
+    @JvmStatic
+    fun roundRobin(): NexusShardSelector {
+        val counter = AtomicInteger()
+        return NexusShardSelector { shards -> shards[Math.floorMod(counter.getAndIncrement(), shards.size)] }
+    }
+
+    /**
+     * Creates a selector that picks the shard with the least work in flight at the moment, that is, the express
+     * requests that are being processed, the [pw.mihou.nexus.express.NexusExpress.batch] requests and the indexing
+     * and synchronization that Nexus is running on the shard. Work that a shard is given outside of Nexus, such as
+     * requests made through a shard returned by [pw.mihou.nexus.express.NexusExpress.awaitAvailable], is not counted.
+     *
+     * @return a new least in-flight selector.
+     */
+    @JvmStatic
+    fun leastInFlight(): NexusShardSelector = NexusShardSelector { shards ->
+        val express = Nexus.express as NexusExpressCore
+        shards.minBy { shard -> express.inFlight(shard.currentShard) }
+    }
+
+    /**
+     * Creates a selector that picks the shard with the lowest latest gateway latency, shards that haven't measured
+     * their latency yet are picked last.
+     *
+     * @return a new lowest latency selector.
+     */
+    @JvmStatic
+    fun lowestLatency(): NexusShardSelector = NexusShardSelector { shards ->
+        shards.minBy { shard -> latency(shard) }
+    }
+
+    private fun latency(shard: DiscordApi): Long {
+        val latency = shard.latestGatewayLatency.toNanos()
+        return if (latency < 0) Long.MAX_VALUE else latency
+    }
+}
@@ -4,7 +4,10 @@ import org.javacord.api.entity.permission.PermissionType;
 import org.javacord.api.interaction.DiscordLocale;
 import org.javacord.api.interaction.SlashCommandOption;
 import org.jetbrains.annotations.NotNull;
+import pw.mihou.nexus.Nexus;
+import pw.mihou.nexus.core.managers.core.NexusCommandManagerCore;
 import pw.mihou.nexus.core.reflective.annotations.*;
+import pw.mihou.nexus.features.command.interceptors.core.NexusCommandPipeline;
 import pw.mihou.nexus.features.command.validation.OptionValidation;
 import pw.mihou.nexus.features.command.facade.NexusCommand;
 import pw.mihou.nexus.features.command.facade.NexusHandler;
@@ -66,6 +69,12 @@ public class NexusCommandCore implements NexusCommand {
     @InjectReferenceClass
     public NexusHandler handler;
 
+    /**
+     * The compiled interceptor pipeline of this command, this is compiled on the first dispatch and
+     * recompiled only when the interceptor registry or the global interceptors change.
+     */
+    public volatile NexusCommandPipeline pipeline;
+
     @NotNull
     @Override
     public String getUuid() {
@@ -94,18 +103,28 @@ public class NexusCommandCore implements NexusCommand {
 
     @Override
     public NexusCommand associate(Long... serverIds) {
+        List<Long> previousServerIds = this.serverIds;
         this.serverIds = Stream.concat(this.serverIds.stream(), Stream.of(serverIds)).toList();
+        reindex(previousServerIds);
         return this;
     }
 
     @Override
     public NexusCommand disassociate(Long... serverIds) {
         List<Long> excludedSnowflakes = Arrays.asList(serverIds);
+        List<Long> previousServerIds = this.serverIds;
         this.serverIds = this.serverIds.stream().filter(snowflake -> !excludedSnowflakes.contains(snowflake)).toList();
+        reindex(previousServerIds);
 
         return this;
     }
 
+    private void reindex(List<Long> previousServerIds) {
+        if (Nexus.getCommandManager() instanceof NexusCommandManagerCore manager) {
+            manager.reindex(this, previousServerIds);
+        }
+    }
+
     @Override
     public <T> Optional<T> get(String field, Class<T> type) {
         return get(field).map(object -> {
@@ -3,76 +3,80 @@ package pw.mihou.nexus.features.command.core
 import org.javacord.api.event.interaction.SlashCommandCreateEvent
 import org.javacord.api.util.logging.ExceptionLogger
 import pw.mihou.nexus.Nexus
-import pw.mihou.nexus.Nexus.globalAfterwares
-import pw.mihou.nexus.Nexus.globalMiddlewares
 import pw.mihou.nexus.Nexus.logger
-import pw.mihou.nexus.features.command.facade.NexusCommandEvent
+import pw.mihou.nexus.configuration.modules.Cancellable
 import pw.mihou.nexus.features.command.interceptors.core.NexusCommandInterceptorCore
+import pw.mihou.nexus.features.command.interceptors.core.NexusCommandPipeline
 import pw.mihou.nexus.features.command.interceptors.core.NexusMiddlewareGateCore
-import pw.mihou.nexus.features.command.validation.OptionValidation
-import pw.mihou.nexus.features.command.validation.middleware.OptionValidationMiddleware
-import pw.mihou.nexus.features.command.validation.result.ValidationResult
 import java.time.Instant
 import java.util.concurrent.CompletableFuture
-import java.util.concurrent.atomic.AtomicBoolean
 
 object NexusCommandDispatcher {
     /**
      * Dispatches one slash command create event of a command onto the given [NexusCommandCore].
      * This performs the necessary middleware handling, dispatching to the listener and afterware handling.
      * <br></br>
-     * This is synchronous by nature except when the event is dispatched to its respective listener and also
-     * when the afterwares are executed.
+     * Synchronous middlewares are executed on the calling thread while asynchronous middlewares are composed onto
+     * their returned stage, no thread is blocked while waiting for the middlewares or the deferred response. The
+     * listener and the afterwares are always executed asynchronously.
+     * <br></br>
+     * The admission control of the [Nexus.launcher] is applied to the interaction when the event is received, that is,
+     * before the middlewares and the auto-defer, an admitted command is therefore never rejected with its interaction
+     * once it may have been acknowledged.
      *
      * @param instance  The [NexusCommandCore] instance to dispatch the event towards.
      * @param event     The [SlashCommandCreateEvent] event to dispatch.
      */
     fun dispatch(instance: NexusCommandCore, event: SlashCommandCreateEvent) {
         val nexusEvent = NexusCommandEventCore(event, instance)
-
-        val middlewares: MutableList<String> = ArrayList()
-        middlewares.add(OptionValidationMiddleware.NAME)
-        middlewares.addAll(globalMiddlewares)
-        middlewares.addAll(instance.middlewares)
-
-        val afterwares: MutableList<String> = ArrayList()
-        afterwares.addAll(globalAfterwares)
-        afterwares.addAll(instance.afterwares)
-
-        var dispatched = false
+        val pipeline = NexusCommandInterceptorCore.pipeline(instance)
 
         try {
-            val middlewareGate: NexusMiddlewareGateCore? = if (Nexus.configuration.interceptors.autoDeferMiddlewareResponses) {
-                val future = CompletableFuture.supplyAsync {
-                    NexusCommandInterceptorCore.execute(nexusEvent, NexusCommandInterceptorCore.middlewares(middlewares))
-                }
+            val middlewares = CompletableFuture<NexusMiddlewareGateCore?>()
+            var task: Cancellable? = null
+
+            if (Nexus.configuration.interceptors.autoDeferMiddlewareResponses) {
                 val timeUntil = Instant.now().toEpochMilli() -
                         event.interaction.creationTimestamp.minusMillis(Nexus.configuration.global.autoDeferAfterMilliseconds).toEpochMilli()
-                val deferredTaskRan = AtomicBoolean(false)
-                val task = Nexus.launch.scheduler.launch(timeUntil) {
-                    deferredTaskRan.set(true)
-                    if (future.isDone) {
+                task = Nexus.launch.scheduler.launch(timeUntil) {
+                    if (middlewares.isDone) {
                         return@launch
                     }
                     nexusEvent.respondLaterEphemerallyIf(Nexus.configuration.interceptors.autoDeferAsEphemeral)
                         .exceptionally(ExceptionLogger.get())
                 }
-                val gate = future.join()
-                if (!deferredTaskRan.get()) {
-                    task.cancel(false)
-                }
-                gate
-            } else {
-                NexusCommandInterceptorCore.execute(nexusEvent, NexusCommandInterceptorCore.middlewares(middlewares))
             }
 
+            middlewares.thenAccept { middlewareGate ->
+                task?.cancel(false)
+                proceed(instance, event, nexusEvent, pipeline, middlewareGate)
+            }
+
+            NexusCommandInterceptorCore.executeMiddlewares(nexusEvent, pipeline, middlewares)
+        } catch (exception: Exception) {
+            logger.error("An uncaught exception occurred within Nexus' dispatcher for command ${instance.name}.", exception)
+            NexusCommandInterceptorCore.executeAfterwares(nexusEvent, pipeline, dispatched = false)
+        }
+    }
+
+    private fun proceed(
+        instance: NexusCommandCore,
+        event: SlashCommandCreateEvent,
+        nexusEvent: NexusCommandEventCore,
+        pipeline: NexusCommandPipeline,
+        middlewareGate: NexusMiddlewareGateCore?
+    ) {
+        var dispatched = false
+
+        try {
             if (middlewareGate != null) {
                 val middlewareResponse = middlewareGate.response()
                 if (middlewareResponse != null) {
                     val updaterFuture = nexusEvent.updater.get()
                     if (updaterFuture != null) {
-                        val updater = updaterFuture.join()
-                        middlewareResponse.into(updater).update().exceptionally(ExceptionLogger.get())
+                        updaterFuture
+                            .thenCompose { updater -> middlewareResponse.into(updater).update() }
+                            .exceptionally(ExceptionLogger.get())
                     } else {
                         var responder = nexusEvent.respondNow()
                         if (middlewareResponse.ephemeral) {
@@ -102,14 +106,14 @@ object NexusCommandDispatcher {
             }
 
             Nexus.launcher.launch {
-                NexusCommandInterceptorCore.execute(nexusEvent, NexusCommandInterceptorCore.afterwares(afterwares))
+                NexusCommandInterceptorCore.executeAfterwares(nexusEvent, pipeline)
             }
         } catch (exception: Exception) {
             logger.error("An uncaught exception occurred within Nexus' dispatcher for command ${instance.name}.", exception)
         } finally {
             if (!dispatched) {
-                NexusCommandInterceptorCore.execute(nexusEvent, NexusCommandInterceptorCore.afterwares(afterwares), dispatched = false)
+                NexusCommandInterceptorCore.executeAfterwares(nexusEvent, pipeline, dispatched = false)
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,30 @@
 package pw.mihou.nexus.features.command.interceptors.core
 
 import pw.mihou.nexus.features.command.interceptors.facades.NexusAfterware
+import pw.mihou.nexus.features.command.interceptors.facades.NexusAsyncMiddleware
 import pw.mihou.nexus.features.command.interceptors.facades.NexusCommandInterceptor
 import pw.mihou.nexus.features.command.interceptors.facades.NexusMiddleware
 import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.features.command.core.NexusCommandCore
 import pw.mihou.nexus.features.command.core.NexusMiddlewareEventCore
 import pw.mihou.nexus.features.command.facade.NexusCommandEvent
 import pw.mihou.nexus.features.command.validation.middleware.OptionValidationMiddleware
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 internal object NexusCommandInterceptorCore {
 
-    private val interceptors: MutableMap<String, NexusCommandInterceptor> = mutableMapOf(
+    private val interceptors: MutableMap<String, NexusCommandInterceptor> = ConcurrentHashMap(mapOf(
         OptionValidationMiddleware.NAME to OptionValidationMiddleware
-    )
+    ))
+
+    /**
+     * The generation of the registry, this is incremented whenever the registry or the global interceptors change
+     * and is used to identify [NexusCommandPipeline]s that need to be recompiled.
+     */
+    private val generation = AtomicLong()
 
     /**
      * Adds one middleware to [Nexus].
@@ -22,6 +34,7 @@ internal object NexusCommandInterceptorCore {
     @JvmStatic
     fun addMiddleware(name: String, middleware: NexusMiddleware) {
         interceptors[name] = middleware
+        invalidate()
     }
 
     /**
@@ -32,6 +45,7 @@ internal object NexusCommandInterceptorCore {
     @JvmStatic
     fun addAfterware(name: String, afterware: NexusAfterware) {
         interceptors[name] = afterware
+        invalidate()
     }
 
     @JvmStatic
@@ -44,17 +58,63 @@ internal object NexusCommandInterceptorCore {
     @JvmStatic
     fun hasMiddleware(name: String) = interceptors.containsKey(name) && interceptors[name] is NexusMiddleware
 
+    /**
+     * Invalidates all the compiled [NexusCommandPipeline]s, causing them to be recompiled on their next dispatch.
+     */
+    @JvmStatic
+    fun invalidate() {
+        generation.incrementAndGet()
+    }
+
+    /**
+     * Gets the compiled [NexusCommandPipeline] of the command, compiling it if the command has not been dispatched yet
+     * or if the registry has changed since it was last compiled.
+     *
+     * @param command the command to get the pipeline of.
+     * @return the compiled pipeline of the command.
+     */
+    @JvmStatic
+    fun pipeline(command: NexusCommandCore): NexusCommandPipeline {
+        val generation = generation.get()
+        val pipeline = command.pipeline
+        if (pipeline != null && pipeline.generation == generation) {
+            return pipeline
+        }
+
+        return compile(command, generation).also { command.pipeline = it }
+    }
+
+    private fun compile(command: NexusCommandCore, generation: Long): NexusCommandPipeline {
+        val names = LinkedHashSet<String>()
+        names.add(OptionValidationMiddleware.NAME)
+        names.addAll(Nexus.globalMiddlewares)
+        names.addAll(command.middlewares)
+
+        val middlewareNames = ArrayList<String>(names.size)
+        val middlewares = ArrayList<NexusMiddleware>(names.size)
+        for (name in names) {
+            val middleware = interceptors[name] as? NexusMiddleware ?: continue
+            middlewareNames.add(name)
+            middlewares.add(middleware)
+        }
+
+        val afterwares = ArrayList<NexusAfterware>(Nexus.globalAfterwares.size + command.afterwares.size)
+        for (name in Nexus.globalAfterwares) {
+            (interceptors[name] as? NexusAfterware)?.let(afterwares::add)
+        }
+        for (name in command.afterwares) {
+            (interceptors[name] as? NexusAfterware)?.let(afterwares::add)
+        }
+
+        return NexusCommandPipeline(generation, middlewareNames.toTypedArray(), middlewares.toTypedArray(), afterwares.toTypedArray())
+    }
+
     @JvmStatic
     fun middlewares(names: List<String>): Map<String, NexusMiddleware> = names
         .map { it to interceptors[it] }
         .filter { it.second != null && it.second is NexusMiddleware }
         .associate { it.first to it.second as NexusMiddleware }
 
-    internal fun afterwares(names: List<String>): List<NexusAfterware> = names
-        .map { interceptors[it] }
-        .filter { it != null && it is NexusAfterware }
-        .map { it as NexusAfterware }
-
     @JvmStatic
     fun execute(event: NexusCommandEvent, middlewares: Map<String, NexusMiddleware>): NexusMiddlewareGateCore? {
         val gate = NexusMiddlewareGateCore()
@@ -72,13 +132,86 @@ internal object NexusCommandInterceptorCore {
         return null
     }
 
-    internal fun execute(event: NexusCommandEvent, afterwares: List<NexusAfterware>, dispatched: Boolean = true) {
-        for (afterware in afterwares) {
+    /**
+     * Executes the middlewares of the pipeline, synchronous middlewares are executed directly on the current thread
+     * while [NexusAsyncMiddleware]s are composed onto their returned stage, which means that no thread is blocked
+     * while waiting for an asynchronous middleware. An asynchronous middleware whose stage fails stops the command
+     * without a response, and one whose stage never completes leaves the command waiting.
+     *
+     * @param event the event to execute the middlewares with.
+     * @param pipeline the pipeline of the command.
+     * @param future the future to complete once the middlewares are done.
+     * @return a future that completes with the gate that blocked the execution, otherwise null.
+     */
+    internal fun executeMiddlewares(
+        event: NexusCommandEvent,
+        pipeline: NexusCommandPipeline,
+        future: CompletableFuture<NexusMiddlewareGateCore?> = CompletableFuture()
+    ): CompletableFuture<NexusMiddlewareGateCore?> {
+        executeMiddlewares(event, pipeline, NexusMiddlewareGateCore(), 0, future)
+        return future
+    }
+
+    private fun executeMiddlewares(
+        event: NexusCommandEvent,
+        pipeline: NexusCommandPipeline,
+        gate: NexusMiddlewareGateCore,
+        from: Int,
+        future: CompletableFuture<NexusMiddlewareGateCore?>
+    ) {
+        val middlewares = pipeline.middlewares
+        var index = from
+        while (index < middlewares.size) {
+            val current = index
+            try {
+                val middleware = middlewares[current]
+                if (middleware is NexusAsyncMiddleware) {
+                    val stage: CompletionStage<Void> = try {
+                        middleware.onBeforeCommandAsync(NexusMiddlewareEventCore(event, gate))
+                    } catch (exception: Exception) {
+                        CompletableFuture.failedFuture(exception)
+                    }
+
+                    stage.whenComplete { _, exception ->
+                        if (exception != null) {
+                            Nexus.logger.error("An uncaught exception was caught while trying to execute a middleware.", exception)
+                            // The middleware never made its decision, therefore, the command is stopped without a response.
+                            gate.stop()
+                        }
+
+                        if (!gate.isAllowed) {
+                            event.store(NexusAfterware.BLOCKING_MIDDLEWARE_KEY, pipeline.middlewareNames[current])
+                            future.complete(gate)
+                            return@whenComplete
+                        }
+
+                        executeMiddlewares(event, pipeline, gate, current + 1, future)
+                    }
+                    return
+                }
+
+                middleware.onBeforeCommand(NexusMiddlewareEventCore(event, gate))
+                if (!gate.isAllowed) {
+                    event.store(NexusAfterware.BLOCKING_MIDDLEWARE_KEY, pipeline.middlewareNames[current])
+                    future.complete(gate)
+                    return
+                }
+            } catch (exception: Exception) {
+                Nexus.logger.error("An uncaught exception was caught while trying to execute a middleware.", exception)
+            }
+            index++
+        }
+        future.complete(null)
+    }
+
+    internal fun executeAfterwares(event: NexusCommandEvent, pipeline: NexusCommandPipeline, dispatched: Boolean = true) {
+        val afterwares = pipeline.afterwares
+        for (index in afterwares.indices) {
             try {
                 if (dispatched) {
-                    afterware.onAfterCommandExecution(event)
+                    afterwares[index].onAfterCommandExecution(event)
                 } else {
-                    afterware.onFailedDispatch(event)
+                    afterwares[index].onFailedDispatch(event)
                 }
             } catch (exception: Exception) {
                 Nexus.logger.error("An uncaught exception was caught while trying to execute an afterware.", exception)
@@ -0,0 +1,50 @@
+package pw.mihou.nexus.features.command.interceptors.core
+
+import pw.mihou.nexus.features.command.interceptors.facades.NexusAfterware
+import pw.mihou.nexus.features.command.interceptors.facades.NexusMiddleware
+
+/**
+ * A pipeline is the pre-resolved set of interceptors of a command, this contains the global middlewares, the command's
+ * own middlewares, the global afterwares and the command's own afterwares already resolved from the registry so that
+ * the dispatcher can run them in a plain loop without building any collections per event.
+ *
+ * Pipelines are compiled lazily by [NexusCommandInterceptorCore.pipeline] and are recompiled whenever the
+ * [generation] no longer matches the registry's, which happens when an interceptor is added or the global
+ * interceptors are modified.
+ */
+internal class NexusCommandPipeline(
+    val generation: Long,
+    val middlewareNames: Array<String>,
+    val middlewares: Array<NexusMiddleware>,
+    val afterwares: Array<NexusAfterware>
+)
+
+/**
+ * A set that invalidates all the compiled [NexusCommandPipeline]s whenever it is modified, this is used for the
+ * global middlewares and afterwares so that changes to them are picked up by commands that were already dispatched.
+ */
+internal class NexusInterceptorNameSet(
+    private val delegate: MutableSet<String> = LinkedHashSet()
+): MutableSet<String> by delegate {
+
+    private fun <T> invalidating(changed: T): T {
+        NexusCommandInterceptorCore.invalidate()
+        return changed
+    }
+
+    override fun add(element: String) = invalidating(delegate.add(element))
+    override fun addAll(elements: Collection<String>) = invalidating(delegate.addAll(elements))
+    override fun remove(element: String) = invalidating(delegate.remove(element))
+    override fun removeAll(elements: Collection<String>) = invalidating(delegate.removeAll(elements))
+    override fun retainAll(elements: Collection<String>) = invalidating(delegate.retainAll(elements))
+    override fun clear() = invalidating(delegate.clear())
+
+    override fun iterator(): MutableIterator<String> {
+        val iterator = delegate.iterator()
+        return object: MutableIterator<String> by iterator {
+            override fun remove() = invalidating(iterator.remove())
+        }
+    }
+
+    override fun toString(): String = delegate.toString()
+}
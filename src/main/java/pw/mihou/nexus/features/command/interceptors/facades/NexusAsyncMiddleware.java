@@ -0,0 +1,37 @@
+package pw.mihou.nexus.features.command.interceptors.facades;
+
+import pw.mihou.nexus.features.command.facade.NexusMiddlewareEvent;
+import pw.mihou.nexus.features.messages.NexusMessage;
+
+import java.util.concurrent.CompletionStage;
+
+public interface NexusAsyncMiddleware extends NexusMiddleware {
+
+    /**
+     * This is executed before the command execution, similar to {@link NexusMiddleware#onBeforeCommand(NexusMiddlewareEvent)},
+     * but the middleware is allowed to finish its work asynchronously. The decision is still made through
+     * {@link NexusMiddlewareEvent#stop(NexusMessage)}, {@link NexusMiddlewareEvent#stop()} or {@link NexusMiddlewareEvent#next()},
+     * and the dispatcher will only move to the next middleware once the returned stage completes. A stage that completes
+     * exceptionally stops the command without a response, while a stage that never completes means that the command is
+     * never executed.
+     * <br><br>
+     * The dispatcher composes the stage without blocking any thread, therefore, you should avoid calling {@code join()}
+     * inside the middleware and instead return the future itself.
+     *
+     * @param event The event that was received by Nexus.
+     * @return A stage that completes once the middleware has made its decision.
+     */
+    CompletionStage<Void> onBeforeCommandAsync(NexusMiddlewareEvent event);
+
+    /**
+     * Executes the middleware and waits for the decision, this is only used when the middleware is executed
+     * outside the dispatcher, such as through {@link pw.mihou.nexus.features.command.facade.NexusCommandEvent#middlewares}.
+     *
+     * @param event The event that was received by Nexus.
+     */
+    @Override
+    default void onBeforeCommand(NexusMiddlewareEvent event) {
+        onBeforeCommandAsync(event).toCompletableFuture().join();
+    }
+
+}
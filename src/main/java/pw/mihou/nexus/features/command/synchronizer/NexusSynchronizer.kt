@@ -3,18 +3,77 @@ package pw.mihou.nexus.features.command.synchronizer
 import org.javacord.api.interaction.ApplicationCommand
 import org.javacord.api.interaction.ApplicationCommandBuilder
 import org.javacord.api.interaction.SlashCommandBuilder
+import org.javacord.api.DiscordApi
+import org.javacord.api.exception.DiscordException
+import org.javacord.api.exception.RatelimitException
 import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.configuration.modules.info
+import pw.mihou.nexus.core.async.NexusBoundedFutures
 import pw.mihou.nexus.core.async.NexusLaunchable
 import pw.mihou.nexus.core.managers.facade.NexusCommandManager
+import pw.mihou.nexus.core.managers.indexes.IndexStore
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import pw.mihou.nexus.express.core.NexusExpressCore
 import pw.mihou.nexus.features.command.facade.NexusCommand
 import pw.mihou.nexus.features.command.synchronizer.exceptions.NexusSynchronizerException
+import pw.mihou.nexus.features.command.synchronizer.fingerprints.NexusCommandFingerprints
+import pw.mihou.nexus.features.command.synchronizer.journal.NexusSynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.journal.defaults.FileSynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.journal.defaults.InMemorySynchronizationJournal
 import pw.mihou.nexus.features.command.synchronizer.overwrites.NexusSynchronizeMethods
 import pw.mihou.nexus.features.command.synchronizer.overwrites.defaults.NexusDefaultSynchronizeMethods
+import pw.mihou.nexus.features.command.synchronizer.records.NexusJournalEntry
+import pw.mihou.nexus.features.command.synchronizer.records.NexusSynchronizationReport
+import pw.mihou.nexus.features.contexts.NexusContextMenu
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 class NexusSynchronizer internal constructor() {
 
     @Volatile var methods: NexusSynchronizeMethods = NexusDefaultSynchronizeMethods
+
+    /**
+     * When enabled, [synchronize] fetches the commands that are live on Discord for every scope that it has no record of
+     * and skips pushing the scope when the live commands already match, fetching is rate-limited far more leniently
+     * than overwriting. Scopes whose live commands cannot be fetched are pushed. This can be disabled to always push
+     * scopes that Nexus has no record of.
+     */
+    @Volatile var compareWithLive: Boolean = true
+
+    /**
+     * The maximum amount of servers that [synchronize], [upsert] and [delete] push at the same time per shard.
+     */
+    @Volatile var concurrencyPerShard: Int = 4
+
+    /**
+     * The maximum amount of times that a rate-limited scope is retried and the delay before the first retry, the
+     * delay is doubled for each retry after.
+     */
+    @Volatile var maximumRetries: Int = 3
+    @Volatile var backoffInMilliseconds: Long = 1000
+
+    /**
+     * The amount of synchronized scopes whose commands are merged into the index store at once.
+     */
+    @Volatile var indexBatchSize: Int = 50
+
+    /**
+     * The window in which the [batchUpdate]s of the same server are merged into a single overwrite, this is disabled
+     * by default. Enable this when batch updates are triggered by users, such as toggling commands from a dashboard,
+     * which would otherwise cause an overwrite for every toggle.
+     */
+    @Volatile var batchUpdateCoalescingWindowInMilliseconds: Long = 0
+
+    private val coalescedBatchUpdates: MutableMap<Long, CompletableFuture<Void>> = ConcurrentHashMap()
+
+    /**
+     * The journal that records the fingerprints and the application command identifiers of the scopes that were last
+     * pushed or found to be live, use a [FileSynchronizationJournal] to carry these across restarts, which allows
+     * [synchronize] to skip unchanged scopes and seed the index store without any requests to Discord.
+     */
+    @Volatile var journal: NexusSynchronizationJournal = InMemorySynchronizationJournal()
     private val inclusions: MutableMap<Long, MutableList<ApplicationCommandBuilder<*, *, *>>> = mutableMapOf()
 
     companion object {
@@ -36,6 +95,9 @@ class NexusSynchronizer internal constructor() {
     /**
      * Deletes a command from a specific server.
      *
+     * The servers are de-duplicated and deleted in parallel, up to [concurrencyPerShard] servers per shard, use
+     * [deleteAndReport] to be told of each server that the command was deleted from.
+     *
      * @param command       The command to delete.
      * @param servers       The servers to delete the command towards.
      * @param totalShards   The total amount of shards for this bot. This is used to
@@ -43,16 +105,40 @@ class NexusSynchronizer internal constructor() {
      * @return  A future to indicate the completion of this task.
      */
     fun delete(command: NexusCommand, totalShards: Int, vararg servers: Long): NexusLaunchable<Unit, Unit>  = NexusLaunchable {
-        for (serverId in servers) {
-            try {
-                Nexus.express
-                    .await(Nexus.sharding.calculate(serverId, totalShards))
-                    .thenCompose { shard -> methods.deleteForServer(shard, command, serverId) }
-                    .join()
-            } catch (exception: Exception) {
-                error(NexusSynchronizerException(serverId, command, exception))
-            }
-        }
+        delete(command, totalShards, servers, onComplete = {}, onError = { error(it) })
+    }
+
+    /**
+     * Deletes a command from the given servers, similar to [delete], except that each server that the command was
+     * deleted from is sent to the task completion listeners as soon as it completes.
+     *
+     * @param command       The command to delete.
+     * @param servers       The servers to delete the command towards.
+     * @param totalShards   The total amount of shards for this bot. This is used to
+     *                      for sharding formula.
+     * @return  A future to indicate the completion of this task.
+     */
+    fun deleteAndReport(command: NexusCommand, totalShards: Int, vararg servers: Long): NexusLaunchable<Unit, Long>  = NexusLaunchable {
+        delete(command, totalShards, servers, onComplete = { complete(it) }, onError = { error(it) })
+    }
+
+    private fun delete(
+        command: NexusCommand,
+        totalShards: Int,
+        servers: LongArray,
+        onComplete: (server: Long) -> Unit,
+        onError: (exception: Exception) -> Unit
+    ) {
+        fanOut(
+            servers, totalShards,
+            task = { shard, server -> methods.deleteForServer(shard, command, server) },
+            onComplete = { server, _ ->
+                journal.remove(server)
+                onComplete(server)
+            },
+            onError = { server, exception -> onError(NexusSynchronizerException(server, command, exception)) }
+        ).join()
+        journal.flush()
     }
 
     /**
@@ -60,28 +146,64 @@ class NexusSynchronizer internal constructor() {
      * server command list and can be used to clear any server slash commands of the bot for that
      * specific server.
      *
+     * When [batchUpdateCoalescingWindowInMilliseconds] is enabled, all the batch updates of the same server that are
+     * requested within the window are merged into a single overwrite which is pushed once the window closes, the
+     * commands of the server are collected at that point, therefore, the overwrite includes every change that was made
+     * within the window and all the returned futures complete with its result.
+     *
      * @param server the given guild snowflake to perform updates upon.
+     * @param totalShards the total amount of shards for this bot, this is used to push through the shard that owns the server.
      * @return  A future to indicate progress of this task.
      */
-    fun batchUpdate(server: Long): CompletableFuture<Void> {
-        val manager: NexusCommandManager = Nexus.commandManager
-        val serverCommands = manager.commandsAssociatedWith(server)
-            .map { command -> command.asSlashCommand() as ApplicationCommandBuilder<*, *, *> }
-            .toHashSet()
+    @JvmOverloads
+    fun batchUpdate(server: Long, totalShards: Int = Nexus.sharding.totalShards): CompletableFuture<Void> {
+        val window = batchUpdateCoalescingWindowInMilliseconds
+        if (window <= 0) {
+            return overwrite(server, totalShards)
+        }
+
+        val future = CompletableFuture<Void>()
+        val existing = coalescedBatchUpdates.putIfAbsent(server, future)
+        if (existing != null) {
+            return existing.copy()
+        }
+
+        Nexus.launch.scheduler.launch(window) {
+            coalescedBatchUpdates.remove(server, future)
+
+            // Every caller within the window waits on this future, therefore, it has to complete even when the
+            // overwrite fails before it could return a future.
+            val overwritten: CompletableFuture<Void> = try {
+                overwrite(server, totalShards)
+            } catch (exception: Exception) {
+                CompletableFuture.failedFuture(exception)
+            }
+
+            overwritten.whenComplete { _, exception ->
+                if (exception != null) future.completeExceptionally(exception)
+                else future.complete(null)
+            }
+        }
+        return future.copy()
+    }
 
-        inclusions[server]?.let { serverCommands += it }
-        manager.contextMenusAssociatedWith(server)
-            .map { contextMenu -> contextMenu.builder }
-            .forEach { serverCommands += it }
+    private fun overwrite(server: Long, totalShards: Int): CompletableFuture<Void> {
+        val manager: NexusCommandManager = Nexus.commandManager
+        val scope = scope(manager, server)
 
-        return Nexus.express.awaitAvailable()
-            .thenCompose { shard -> methods.bulkOverwriteServer(shard, serverCommands, server) }
-            .thenAccept(manager::index)
+        return owner(Nexus.sharding.calculate(server, totalShards.coerceAtLeast(1))) { shard -> overwrite(shard, scope) }
+            .thenAccept { commands ->
+                manager.indexStore.addAll(record(scope, commands))
+                journal.flush()
+            }
     }
 
     /**
      * Upserts a command to a specific server.
      *
+     * The servers are de-duplicated and upserted in parallel, up to [concurrencyPerShard] servers per shard, each
+     * command is sent to the task completion listeners as soon as it completes.
+     *
      * @param command       The command to upsert.
      * @param servers       The servers to upsert the command towards.
      * @param totalShards   The total amount of shards for this bot. This is used to
@@ -89,96 +211,390 @@ class NexusSynchronizer internal constructor() {
      * @return  A future to indicate progress of this task.
      */
     fun upsert(command: NexusCommand, totalShards: Int, vararg servers: Long): NexusLaunchable<Unit, ApplicationCommand> = NexusLaunchable {
-        val serverMappedFutures = mutableMapOf<Long, CompletableFuture<Void>>()
-
-        for (server in servers) {
-            if (serverMappedFutures.containsKey(server)) continue
-
-            try {
-                Nexus.express
-                    .await(Nexus.sharding.calculate(server, totalShards))
-                    .thenCompose { shard -> methods.updateForServer(shard, command, server) }
-                    .thenApply { complete(it); it }
-                    .thenAccept { `$command` -> Nexus.commandManager.index(command, `$command`.applicationId, `$command`.serverId.orElse(null)) }
-                    .join()
-            } catch (exception: Exception) {
-                error(NexusSynchronizerException(server, command, exception))
+        fanOut(
+            servers, totalShards,
+            task = { shard, server -> methods.updateForServer(shard, command, server) },
+            onComplete = { server, applicationCommand ->
+                journal.remove(server)
+                Nexus.commandManager.index(command, applicationCommand.id, applicationCommand.serverId.orElse(null))
+                complete(applicationCommand)
+            },
+            onError = { server, exception -> error(NexusSynchronizerException(server, command, exception)) }
+        ).join()
+        journal.flush()
+    }
+
+    /**
+     * Executes the task for each one of the servers through the shard that owns the server, the servers are
+     * de-duplicated and each shard executes up to [concurrencyPerShard] tasks at the same time. Rate-limited tasks are
+     * retried with an exponential backoff.
+     *
+     * @param servers the servers to execute the task for.
+     * @param totalShards the total amount of shards for this bot, this is used for the sharding formula.
+     * @param task the task to execute for each server.
+     * @param onComplete called as soon as the task of a server completes.
+     * @param onError called as soon as the task of a server fails.
+     * @return a future that completes once the tasks of all the servers have completed.
+     */
+    private fun <T> fanOut(
+        servers: LongArray,
+        totalShards: Int,
+        task: (shard: DiscordApi, server: Long) -> CompletableFuture<T>,
+        onComplete: (server: Long, result: T) -> Unit,
+        onError: (server: Long, exception: Exception) -> Unit
+    ): CompletableFuture<Void> {
+        val shards = servers.distinct().groupBy { server -> Nexus.sharding.calculate(server, totalShards) }
+        val tasks = shards.map { (shard, shardServers) ->
+            Nexus.express.await(shard).thenCompose { api ->
+                NexusBoundedFutures.forEach(shardServers, concurrencyPerShard) { server ->
+                    backoff { task(api, server) }.handle { result, exception ->
+                        if (exception != null) onError(server, unwrap(exception))
+                        else onComplete(server, result)
+                    }
+                }
+            }.exceptionally { exception ->
+                shardServers.forEach { server -> onError(server, unwrap(exception)) }
+                null
             }
         }
+
+        return CompletableFuture.allOf(*tasks.toTypedArray())
     }
 
     /**
      * Synchronizes all the server commands and global commands with the use of
      * [org.javacord.api.DiscordApi.bulkOverwriteGlobalApplicationCommands] and
-     * [org.javacord.api.DiscordApi.bulkOverwriteServerApplicationCommands]. This does not
-     * take any regards to any changes and pushes an override without any care.
+     * [org.javacord.api.DiscordApi.bulkOverwriteServerApplicationCommands].
+     *
+     * Each scope (the global commands or the commands of one server) is fingerprinted by [NexusCommandFingerprints] and
+     * is only pushed when the fingerprint differs from the last fingerprint that was pushed or, when [compareWithLive]
+     * is enabled, from the commands that are live on Discord. Scopes that contain [include]d builders cannot be
+     * fingerprinted and are always pushed.
+     *
+     * The server scopes are grouped by the shard that owns the server and each shard synchronizes up to
+     * [concurrencyPerShard] servers at the same time, scopes that are rate-limited are retried with an exponential
+     * backoff and the resulting commands are merged into the index store in batches of [indexBatchSize] scopes.
      *
+     * @param force whether to push all the scopes regardless of their fingerprints.
+     * @param totalShards the total amount of shards for this bot, this is used for the sharding formula.
      * @return A future to indicate the progress of the synchronization task.
      */
-    fun synchronize(): NexusLaunchable<Unit, Set<ApplicationCommand>> = NexusLaunchable {
+    @JvmOverloads
+    fun synchronize(
+        force: Boolean = false,
+        totalShards: Int = Nexus.sharding.totalShards
+    ): NexusLaunchable<NexusSynchronizationReport, Set<ApplicationCommand>> = NexusLaunchable {
         val manager: NexusCommandManager = Nexus.commandManager
+        val tally = Tally()
+        val merger = IndexMerger(manager.indexStore, indexBatchSize)
 
-        val serverCommands = manager.serverCommands
-        val serverContextMenus = manager.serverContextMenus
-        val globalCommands = manager.globalCommands
-            .map { command -> command.asSlashCommand() as ApplicationCommandBuilder<*, *, *> }
-            .toHashSet()
-
-        inclusions[GLOBAL_SCOPE]?.let { globalCommands += it }
-        manager.globalContextMenus
-            .map { contextMenu -> contextMenu.builder }
-            .forEach { globalCommands += it }
+        val scopes = scopes(manager)
+        val global = scopes.remove(GLOBAL_SCOPE)!!
 
         try {
-            Nexus.express
-                .awaitAvailable()
-                .thenCompose { shard -> methods.bulkOverwriteGlobal(shard, globalCommands) }
-                .thenApply { complete(it); it }
-                .thenAccept(manager::index)
+            (Nexus.express as NexusExpressCore)
+                .withAvailable { shard -> backoff { synchronize(shard, global, force, compareWithLive, tally) } }
+                .thenAccept { result ->
+                    if (result.pushed) complete(result.commands)
+                    merger.add(result.indexes)
+                }
                 .join()
         } catch (exception: Exception) {
+            tally.failed.incrementAndGet()
             error(NexusSynchronizerException(null, null, exception))
         }
 
-        if (serverCommands.isEmpty() && serverContextMenus.isEmpty()) {
-            return@NexusLaunchable
+        val shards = scopes.values.groupBy { scope -> Nexus.sharding.calculate(scope.server!!, totalShards.coerceAtLeast(1)) }
+        val tasks = shards.map { (shard, shardScopes) ->
+            owner(shard) { api ->
+                // Shards can only fetch the commands of their own servers, the scopes that are pushed through a
+                // fallback shard are not compared with the live commands.
+                val compare = compareWithLive && api.currentShard == shard
+                NexusBoundedFutures.forEach(shardScopes, concurrencyPerShard) { scope ->
+                    backoff { synchronize(api, scope, force, compare, tally) }.handle { result, exception ->
+                        if (exception != null) {
+                            tally.failed.incrementAndGet()
+                            error(NexusSynchronizerException(scope.server, null, unwrap(exception)))
+                            return@handle
+                        }
+
+                        if (result.pushed) complete(result.commands)
+                        merger.add(result.indexes)
+                    }
+                }
+            }.exceptionally { exception ->
+                tally.failed.addAndGet(shardScopes.size)
+                error(NexusSynchronizerException(null, null, unwrap(exception)))
+                null
+            }
+        }
+
+        CompletableFuture.allOf(*tasks.toTypedArray()).join()
+        merger.flush()
+        journal.flush()
+
+        val report = tally.report()
+        Nexus.configuration.loggingTemplates.COMMANDS_SYNCHRONIZED(report).info()
+        return@NexusLaunchable report
+    }
+
+    /**
+     * Executes the task with the shard that should be used to synchronize the servers of the given shard, this falls
+     * back to any available shard when the shard is not in this process since any shard can push the commands of any
+     * server, but only the owning shard can fetch them.
+     *
+     * @param shard the number of the shard that owns the servers.
+     * @param task the task to execute with the shard.
+     * @return the result of the task.
+     */
+    private fun <T> owner(shard: Int, task: (DiscordApi) -> CompletableFuture<T>): CompletableFuture<T> {
+        val express = Nexus.express as NexusExpressCore
+        val api = Nexus.sharding[shard] ?: return express.withAvailable(task)
+        return express.withShard(api, task)
+    }
+
+    /**
+     * Executes the task, retrying it with an exponential backoff whenever Discord responds with a rate-limit, up to
+     * [maximumRetries] times. Javacord already waits out the rate-limits that it knows of, this only handles the
+     * rate-limits that still reach Nexus.
+     *
+     * @param attempt the current attempt.
+     * @param task the task to execute.
+     * @return the result of the task.
+     */
+    internal fun <T> backoff(attempt: Int = 0, task: () -> CompletableFuture<T>): CompletableFuture<T> {
+        val attempted = try {
+            task()
+        } catch (exception: Exception) {
+            CompletableFuture.failedFuture(exception)
         }
 
-        val serverMappedCommands: MutableMap<Long, MutableSet<ApplicationCommandBuilder<*, *, *>>> = mutableMapOf()
+        val future = CompletableFuture<T>()
+        attempted.whenComplete { result, exception ->
+            if (exception == null) {
+                future.complete(result)
+                return@whenComplete
+            }
+
+            if (attempt >= maximumRetries || !isRateLimited(exception)) {
+                future.completeExceptionally(exception)
+                return@whenComplete
+            }
 
-        for ((id, value) in inclusions.entries) {
-            if (id == GLOBAL_SCOPE) continue
-            serverMappedCommands.computeIfAbsent(id) { HashSet() } += value
+            Nexus.launch.scheduler.launch(backoffInMilliseconds shl attempt) {
+                backoff(attempt + 1, task).whenComplete { retried, retriedException ->
+                    if (retriedException != null) future.completeExceptionally(retriedException)
+                    else future.complete(retried)
+                }
+            }
         }
+        return future
+    }
+
+    internal fun isRateLimited(exception: Throwable): Boolean {
+        var cause: Throwable? = exception
+        while (cause != null) {
+            if (cause is RatelimitException) return true
+            if (cause is DiscordException && cause.response.map { it.code == 429 }.orElse(false)) return true
+            cause = cause.cause
+        }
+        return false
+    }
+
+    private fun unwrap(exception: Throwable): Exception {
+        val cause = if (exception is CompletionException) exception.cause ?: exception else exception
+        return cause as? Exception ?: RuntimeException(cause)
+    }
+
+    /**
+     * Collects all the commands, context menus and included builders by their scope, the global scope is
+     * identified by [GLOBAL_SCOPE].
+     *
+     * @param manager the command manager to collect the commands from.
+     * @return all the scopes that should be synchronized.
+     */
+    private fun scopes(manager: NexusCommandManager): MutableMap<Long, Scope> {
+        val scopes = linkedMapOf(GLOBAL_SCOPE to Scope(null))
+        fun scope(server: Long) = scopes.computeIfAbsent(server) { Scope(server) }
+
+        manager.globalCommands.forEach { scope(GLOBAL_SCOPE).add(it) }
+        manager.globalContextMenus.forEach { scope(GLOBAL_SCOPE).add(it) }
 
-        for (`$command` in serverCommands) {
-            for (serverId in `$command`.serverIds) {
+        for (command in manager.serverCommands) {
+            for (serverId in command.serverIds) {
                 if (serverId == NexusCommand.PLACEHOLDER_SERVER_ID) continue
-                serverMappedCommands.computeIfAbsent(serverId) { HashSet() } += `$command`.asSlashCommand()
+                scope(serverId).add(command)
             }
         }
 
-        for (contextMenu in serverContextMenus) {
+        for (contextMenu in manager.serverContextMenus) {
             for (serverId in contextMenu.serverIds) {
                 if (serverId == NexusCommand.PLACEHOLDER_SERVER_ID) continue
-                serverMappedCommands.computeIfAbsent(serverId) { HashSet() } += contextMenu.builder
+                scope(serverId).add(contextMenu)
             }
         }
 
-        serverMappedCommands.forEach { (server, builders) ->
-            if (server == NexusCommand.PLACEHOLDER_SERVER_ID) return@forEach
+        for ((id, builders) in inclusions.entries) {
+            if (id == NexusCommand.PLACEHOLDER_SERVER_ID) continue
+            scope(id).include(builders)
+        }
 
-            try {
-                Nexus.express
-                    .awaitAvailable()
-                    .thenCompose { shard -> methods.bulkOverwriteServer(shard, builders, server) }
-                    .thenApply { complete(it); it }
-                    .thenAccept(manager::index)
-                    .join()
-            } catch (exception: Exception) {
-                error(NexusSynchronizerException(server, null, exception))
+        return scopes
+    }
+
+    /**
+     * Collects the commands, context menus and included builders of one server into a scope.
+     *
+     * @param manager the command manager to collect the commands from.
+     * @param server the server to collect the commands of.
+     * @return the scope of the server.
+     */
+    private fun scope(manager: NexusCommandManager, server: Long): Scope {
+        val scope = Scope(server)
+        manager.commandsAssociatedWith(server).forEach { scope.add(it) }
+        manager.contextMenusAssociatedWith(server).forEach { scope.add(it) }
+        inclusions[server]?.let { scope.include(it) }
+        return scope
+    }
+
+    /**
+     * Synchronizes one scope onto Discord, this skips the scope when its fingerprint matches the last pushed fingerprint
+     * or the fingerprint of the commands that are live on Discord.
+     *
+     * @param shard the shard to synchronize the scope with.
+     * @param scope the scope to synchronize.
+     * @param force whether to push the scope regardless of its fingerprint.
+     * @param compare whether to compare the scope with the commands that are live on Discord.
+     * @param tally the tally to count the outcome into.
+     * @return the commands of the scope that are live on Discord after the synchronization.
+     */
+    private fun synchronize(shard: DiscordApi, scope: Scope, force: Boolean, compare: Boolean, tally: Tally): CompletableFuture<ScopeResult> {
+        val fingerprint = if (force) null else scope.fingerprint
+        val known = journal[scope.server]
+
+        if (fingerprint != null && known != null && fingerprint == known.fingerprint) {
+            tally.skipped.incrementAndGet()
+            return CompletableFuture.completedFuture(ScopeResult(emptySet(), known.indexes, pushed = false))
+        }
+
+        // The live commands are only an optimization, a scope whose commands couldn't be fetched (e.g. the server
+        // isn't cached by the shard) is treated as unknown and is pushed.
+        val live: CompletableFuture<Set<ApplicationCommand>?> =
+            if (fingerprint != null && compare) fetch(shard, scope).thenApply<Set<ApplicationCommand>?> { it }.exceptionally { null }
+            else CompletableFuture.completedFuture(null)
+
+        return live.thenCompose { liveCommands ->
+            if (liveCommands != null && NexusCommandFingerprints.ofLive(liveCommands) == fingerprint) {
+                tally.skipped.incrementAndGet()
+                return@thenCompose CompletableFuture.completedFuture(ScopeResult(liveCommands, record(scope, liveCommands), pushed = false))
+            }
+
+            overwrite(shard, scope).thenApply { commands ->
+                val existed = if (liveCommands != null) liveCommands.isNotEmpty() else known != null
+                (if (existed) tally.updated else tally.created).incrementAndGet()
+                ScopeResult(commands, record(scope, commands), pushed = true)
             }
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Records the commands that are live for the scope into the [journal], scopes that cannot be fingerprinted are
+     * removed from the journal instead.
+     *
+     * @param scope the scope that the commands belong to.
+     * @param commands the commands that are live for the scope.
+     * @return the indexes of the commands.
+     */
+    private fun record(scope: Scope, commands: Set<ApplicationCommand>): List<NexusMetaIndex> {
+        val indexes = Nexus.commandManager.manifest(commands)
+        val fingerprint = scope.fingerprint
+
+        if (fingerprint == null) journal.remove(scope.server)
+        else journal.record(NexusJournalEntry(scope.server, fingerprint, indexes))
+
+        return indexes
+    }
+
+    private fun fetch(shard: DiscordApi, scope: Scope): CompletableFuture<Set<ApplicationCommand>> = try {
+        if (scope.server == null) methods.fetchGlobal(shard)
+        else methods.fetchServer(shard, scope.server)
+    } catch (exception: Exception) {
+        CompletableFuture.failedFuture(exception)
+    }
+
+    private fun overwrite(shard: DiscordApi, scope: Scope): CompletableFuture<Set<ApplicationCommand>> =
+        if (scope.server == null) methods.bulkOverwriteGlobal(shard, scope.builders)
+        else methods.bulkOverwriteServer(shard, scope.builders, scope.server)
+
+    /**
+     * A scope is the set of commands that are pushed together, which is either the global commands or the commands
+     * of one server, alongside the descriptions that are used to fingerprint them.
+     */
+    private class Scope(val server: Long?) {
+        val builders: MutableSet<ApplicationCommandBuilder<*, *, *>> = HashSet()
+        private val descriptions = mutableListOf<String>()
+        private var fingerprintable = true
+
+        val fingerprint: String? by lazy {
+            if (fingerprintable) NexusCommandFingerprints.of(descriptions) else null
+        }
+
+        fun add(command: NexusCommand) {
+            builders += command.asSlashCommand()
+            descriptions += NexusCommandFingerprints.describe(command)
+        }
+
+        fun add(contextMenu: NexusContextMenu) {
+            builders += contextMenu.builder
+            descriptions += NexusCommandFingerprints.describe(contextMenu)
+        }
+
+        fun include(builders: Collection<ApplicationCommandBuilder<*, *, *>>) {
+            if (builders.isEmpty()) return
+            this.builders += builders
+            fingerprintable = false
+        }
+    }
+
+    /**
+     * Merges the indexes of the synchronized scopes into the index store in batches instead of indexing each scope
+     * separately as it completes.
+     */
+    internal class IndexMerger(private val store: IndexStore, private val batchSize: Int) {
+        private val pending = mutableListOf<NexusMetaIndex>()
+        private var scopes = 0
+
+        fun add(indexes: List<NexusMetaIndex>) {
+            val batch = synchronized(this) {
+                pending += indexes
+                scopes++
+                if (scopes < batchSize) return
+                drain()
+            }
+            store.addAll(batch)
+        }
+
+        fun flush() {
+            val batch = synchronized(this) { drain() }
+            if (batch.isNotEmpty()) store.addAll(batch)
+        }
+
+        private fun drain(): List<NexusMetaIndex> {
+            val batch = ArrayList(pending)
+            pending.clear()
+            scopes = 0
+            return batch
+        }
+    }
+
+    private class ScopeResult(val commands: Set<ApplicationCommand>, val indexes: List<NexusMetaIndex>, val pushed: Boolean)
+
+    private class Tally {
+        val skipped = AtomicInteger()
+        val updated = AtomicInteger()
+        val created = AtomicInteger()
+        val failed = AtomicInteger()
+
+        fun report() = NexusSynchronizationReport(skipped.get(), updated.get(), created.get(), failed.get())
+    }
+}
@@ -0,0 +1,179 @@
+package pw.mihou.nexus.features.command.synchronizer.fingerprints
+
+import org.javacord.api.entity.permission.PermissionType
+import org.javacord.api.interaction.ApplicationCommand
+import org.javacord.api.interaction.DiscordLocale
+import org.javacord.api.interaction.SlashCommand
+import org.javacord.api.interaction.SlashCommandOption
+import pw.mihou.nexus.features.command.facade.NexusCommand
+import pw.mihou.nexus.features.contexts.NexusContextMenu
+import pw.mihou.nexus.features.contexts.enums.ContextMenuKinds
+import java.security.MessageDigest
+import java.util.*
+
+/**
+ * Fingerprints are stable descriptions of what Discord knows about a command: the name, the description, the options,
+ * the localizations and the permissions. The fingerprint of a [NexusCommand] or [NexusContextMenu] is the same as the
+ * fingerprint of the [ApplicationCommand] that Discord returns after it was pushed, which allows the synchronizer to
+ * tell whether a scope has changed without pushing it.
+ *
+ * Everything that has no inherent order, such as localizations and permissions, is sorted so that the fingerprint
+ * does not change between restarts.
+ */
+object NexusCommandFingerprints {
+
+    private const val SLASH_COMMAND = "slash"
+    private const val USER_CONTEXT_MENU = "user"
+    private const val MESSAGE_CONTEXT_MENU = "message"
+
+    /**
+     * Describes the [NexusCommand] in the canonical form that is used by the fingerprints.
+     *
+     * @param command the command to describe.
+     * @return the canonical description of the command.
+     */
+    @JvmStatic
+    fun describe(command: NexusCommand): String {
+        val permissions: Collection<PermissionType>? = when {
+            command.defaultEnabledForPermissions.isNotEmpty() -> command.defaultEnabledForPermissions
+            command.isDefaultDisabled -> emptyList()
+            else -> null
+        }
+
+        return StringBuilder()
+            .field(SLASH_COMMAND)
+            .field(command.name.lowercase())
+            .field(command.description)
+            .localizations(command.nameLocalizations)
+            .localizations(command.descriptionLocalizations)
+            .field(command.isNsfw)
+            .field(command.isEnabledInDms)
+            .permissions(permissions)
+            .options(command.options)
+            .toString()
+    }
+
+    /**
+     * Describes the [NexusContextMenu] in the canonical form that is used by the fingerprints.
+     *
+     * @param contextMenu the context menu to describe.
+     * @return the canonical description of the context menu.
+     */
+    @JvmStatic
+    fun describe(contextMenu: NexusContextMenu): String {
+        return StringBuilder()
+            .field(if (contextMenu.kind == ContextMenuKinds.USER) USER_CONTEXT_MENU else MESSAGE_CONTEXT_MENU)
+            .field(contextMenu.name)
+            .localizations(contextMenu.nameLocalizations)
+            .field(contextMenu.nsfw)
+            .field(contextMenu.enabledInDms)
+            .permissions(contextMenu.requiredPermissions.ifEmpty { null })
+            .toString()
+    }
+
+    /**
+     * Describes the [ApplicationCommand] that is live on Discord in the canonical form that is used by the fingerprints.
+     *
+     * @param command the command to describe.
+     * @return the canonical description of the command.
+     */
+    @JvmStatic
+    fun describe(command: ApplicationCommand): String {
+        val permissions = command.defaultRequiredPermissions.orElse(null)
+        if (command is SlashCommand) {
+            return StringBuilder()
+                .field(SLASH_COMMAND)
+                .field(command.name.lowercase())
+                .field(command.description)
+                .localizations(command.nameLocalizations)
+                .localizations(command.descriptionLocalizations)
+                .field(command.isNsfw)
+                .field(command.isEnabledInDms)
+                .permissions(permissions)
+                .options(command.options)
+                .toString()
+        }
+
+        return StringBuilder()
+            .field(command.type.name.lowercase())
+            .field(command.name)
+            .localizations(command.nameLocalizations)
+            .field(command.isNsfw)
+            .field(command.isEnabledInDms)
+            .permissions(permissions)
+            .toString()
+    }
+
+    /**
+     * Combines the descriptions of all the commands in one scope into a single fingerprint, the order of the
+     * descriptions does not matter.
+     *
+     * @param descriptions the descriptions of all the commands in the scope.
+     * @return the fingerprint of the scope.
+     */
+    @JvmStatic
+    fun of(descriptions: Collection<String>): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        for (description in descriptions.sorted()) {
+            digest.update(description.toByteArray(Charsets.UTF_8))
+            digest.update(0)
+        }
+        return HexFormat.of().formatHex(digest.digest())
+    }
+
+    /**
+     * Gets the fingerprint of the commands that are live on Discord for one scope.
+     *
+     * @param commands the commands that are live on Discord.
+     * @return the fingerprint of the scope.
+     */
+    @JvmStatic
+    fun ofLive(commands: Collection<ApplicationCommand>): String = of(commands.map(::describe))
+
+    private fun StringBuilder.field(value: Any?): StringBuilder {
+        val text = value?.toString() ?: return append("~;")
+        return append(text.length).append(':').append(text).append(';')
+    }
+
+    private fun StringBuilder.localizations(localizations: Map<DiscordLocale, String>): StringBuilder {
+        append('{')
+        for ((locale, value) in localizations.entries.sortedBy { it.key.localeCode }) {
+            field(locale.localeCode).field(value)
+        }
+        return append('}')
+    }
+
+    private fun StringBuilder.permissions(permissions: Collection<PermissionType>?): StringBuilder {
+        if (permissions == null) return field(null)
+        return field(permissions.map { it.name }.sorted().joinToString(","))
+    }
+
+    private fun StringBuilder.options(options: List<SlashCommandOption>): StringBuilder {
+        append('[')
+        for (option in options) {
+            field(option.type.name)
+                .field(option.name)
+                .field(option.description)
+                .localizations(option.nameLocalizations)
+                .localizations(option.descriptionLocalizations)
+                .field(option.isRequired)
+                .field(option.isAutocompletable)
+                .field(option.channelTypes.map { it.name }.sorted().joinToString(","))
+                .field(option.longMinValue.orElse(null))
+                .field(option.longMaxValue.orElse(null))
+                .field(option.decimalMinValue.orElse(null))
+                .field(option.decimalMaxValue.orElse(null))
+                .field(option.minLength.orElse(null))
+                .field(option.maxLength.orElse(null))
+
+            append('(')
+            for (choice in option.choices) {
+                field(choice.name).field(choice.valueAsString).localizations(choice.nameLocalizations)
+            }
+            append(')')
+
+            options(option.options)
+        }
+        return append(']')
+    }
+}
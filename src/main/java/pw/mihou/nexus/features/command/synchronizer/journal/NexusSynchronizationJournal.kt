@@ -0,0 +1,43 @@
+package pw.mihou.nexus.features.command.synchronizer.journal
+
+import pw.mihou.nexus.features.command.synchronizer.records.NexusJournalEntry
+
+/**
+ * A journal records the fingerprint and the application command identifiers of every scope that the synchronizer has
+ * pushed, this allows the synchronizer to skip scopes that haven't changed and to seed the index store without having
+ * to ask Discord. A persistent journal allows this to carry over across restarts.
+ */
+interface NexusSynchronizationJournal {
+
+    /**
+     * Gets the entry of the scope.
+     * @param server the server of the scope, or null for the global scope.
+     * @return the entry of the scope, if any.
+     */
+    operator fun get(server: Long?): NexusJournalEntry?
+
+    /**
+     * Records the entry, replacing any entry of the same scope.
+     * @param entry the entry to record.
+     */
+    fun record(entry: NexusJournalEntry)
+
+    /**
+     * Removes the entry of the scope, this happens whenever the commands of the scope are modified outside of a
+     * full synchronization which means the live commands may no longer match the recorded fingerprint.
+     * @param server the server of the scope, or null for the global scope.
+     */
+    fun remove(server: Long?)
+
+    /**
+     * Gets all the entries in the journal.
+     * @return all the entries in the journal.
+     */
+    fun all(): List<NexusJournalEntry>
+
+    /**
+     * Persists the recorded entries, this is called by the synchronizer at the end of every synchronization so that
+     * persistent journals can write all the entries at once.
+     */
+    fun flush() {}
+}
@@ -0,0 +1,114 @@
+package pw.mihou.nexus.features.command.synchronizer.journal.defaults
+
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import pw.mihou.nexus.features.command.synchronizer.journal.NexusSynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.records.NexusJournalEntry
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+
+/**
+ * A [NexusSynchronizationJournal] that persists its entries into a file, this allows a restarted bot to skip pushing
+ * the commands that haven't changed since the last synchronization and to seed the index store from the journal
+ * without any requests to Discord.
+ *
+ * Entries are kept in memory and are only written to the file when the synchronizer flushes the journal, the file is
+ * rewritten as a whole into a sibling file which is then moved over the journal, so a crash leaves the previous journal
+ * intact. A journal that cannot be read is discarded, which only means that the next synchronization compares against
+ * Discord again.
+ *
+ * @param path the path of the file that the journal is persisted into.
+ */
+class FileSynchronizationJournal(private val path: Path): NexusSynchronizationJournal {
+
+    private val memory = InMemorySynchronizationJournal()
+    @Volatile private var dirty = false
+
+    companion object {
+        private const val MAGIC = 0x4E58534A // NXSJ
+        private const val VERSION = 1
+    }
+
+    init {
+        if (Files.exists(path)) {
+            try {
+                memory.replaceAll(read())
+            } catch (exception: IOException) {
+                Nexus.logger.warn("The synchronization journal at $path couldn't be read, it will be discarded. {exception=$exception}")
+            }
+        }
+    }
+
+    override operator fun get(server: Long?): NexusJournalEntry? = memory[server]
+
+    override fun record(entry: NexusJournalEntry) {
+        memory.record(entry)
+        dirty = true
+    }
+
+    override fun remove(server: Long?) {
+        memory.remove(server)
+        dirty = true
+    }
+
+    override fun all(): List<NexusJournalEntry> = memory.all()
+
+    @Synchronized
+    override fun flush() {
+        if (!dirty) return
+        dirty = false
+
+        val temporary = path.resolveSibling(path.fileName.toString() + ".tmp")
+        try {
+            path.toAbsolutePath().parent?.let { Files.createDirectories(it) }
+            DataOutputStream(BufferedOutputStream(Files.newOutputStream(temporary))).use { output ->
+                val entries = memory.all()
+
+                output.writeInt(MAGIC)
+                output.writeInt(VERSION)
+                output.writeInt(entries.size)
+                for (entry in entries) {
+                    output.writeBoolean(entry.server != null)
+                    output.writeLong(entry.server ?: 0)
+                    output.writeUTF(entry.fingerprint)
+                    output.writeInt(entry.indexes.size)
+                    for (index in entry.indexes) {
+                        output.writeUTF(index.command)
+                        output.writeLong(index.applicationCommandId)
+                    }
+                }
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (exception: IOException) {
+            dirty = true
+            Nexus.logger.error("Failed to persist the synchronization journal at $path.", exception)
+        }
+    }
+
+    private fun read(): List<NexusJournalEntry> {
+        DataInputStream(BufferedInputStream(Files.newInputStream(path))).use { input ->
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw IOException("The file is not a synchronization journal that can be read by this version of Nexus.")
+            }
+
+            val entries = mutableListOf<NexusJournalEntry>()
+            repeat(input.readInt()) {
+                val global = !input.readBoolean()
+                val serverId = input.readLong()
+                val server = if (global) null else serverId
+                val fingerprint = input.readUTF()
+
+                val indexes = mutableListOf<NexusMetaIndex>()
+                repeat(input.readInt()) {
+                    indexes.add(NexusMetaIndex(command = input.readUTF(), applicationCommandId = input.readLong(), server = server))
+                }
+
+                entries.add(NexusJournalEntry(server, fingerprint, indexes))
+            }
+            return entries
+        }
+    }
+}
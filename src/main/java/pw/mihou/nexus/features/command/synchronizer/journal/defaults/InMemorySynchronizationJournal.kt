@@ -0,0 +1,36 @@
+package pw.mihou.nexus.features.command.synchronizer.journal.defaults
+
+import pw.mihou.nexus.features.command.synchronizer.journal.NexusSynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.records.NexusJournalEntry
+import java.util.concurrent.ConcurrentHashMap
+
+class InMemorySynchronizationJournal: NexusSynchronizationJournal {
+
+    @Volatile private var global: NexusJournalEntry? = null
+    private val servers = ConcurrentHashMap<Long, NexusJournalEntry>()
+
+    override operator fun get(server: Long?): NexusJournalEntry? =
+        if (server == null) global else servers[server]
+
+    override fun record(entry: NexusJournalEntry) {
+        if (entry.server == null) global = entry
+        else servers[entry.server] = entry
+    }
+
+    override fun remove(server: Long?) {
+        if (server == null) global = null
+        else servers.remove(server)
+    }
+
+    override fun all(): List<NexusJournalEntry> = listOfNotNull(global) + servers.values
+
+    /**
+     * Replaces all the entries of the journal, this is used by persistent journals when loading the entries.
+     * @param entries the entries that the journal should contain.
+     */
+    internal fun replaceAll(entries: Collection<NexusJournalEntry>) {
+        global = null
+        servers.clear()
+        entries.forEach(::record)
+    }
+}
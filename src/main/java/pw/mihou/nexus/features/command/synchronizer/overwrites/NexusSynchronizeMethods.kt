@@ -4,6 +4,7 @@ import org.javacord.api.DiscordApi
 import org.javacord.api.interaction.ApplicationCommand
 import org.javacord.api.interaction.ApplicationCommandBuilder
 import org.javacord.api.interaction.SlashCommandBuilder
+import pw.mihou.nexus.core.exceptions.NexusFailedActionException
 import pw.mihou.nexus.features.command.facade.NexusCommand
 import java.util.concurrent.CompletableFuture
 
@@ -31,4 +32,14 @@ interface NexusSynchronizeMethods {
         command: NexusCommand,
         serverId: Long
     ): CompletableFuture<ApplicationCommand>
+
+    fun fetchGlobal(shard: DiscordApi): CompletableFuture<Set<ApplicationCommand>> = shard.globalApplicationCommands
+
+    fun fetchServer(shard: DiscordApi, serverId: Long): CompletableFuture<Set<ApplicationCommand>> {
+        val server = shard.getServerById(serverId).orElse(null)
+            ?: return CompletableFuture.failedFuture(NexusFailedActionException(
+                "An action failed for Nexus Synchronizer. The server ($serverId) cannot be found on the shard (${shard.currentShard})."
+            ))
+        return shard.getServerApplicationCommands(server)
+    }
 }
@@ -1,6 +1,8 @@
 package pw.mihou.nexus.features.command.synchronizer.overwrites.defaults
 
 import org.javacord.api.DiscordApi
+import org.javacord.api.entity.server.Server
+import org.javacord.api.exception.NotFoundException
 import org.javacord.api.interaction.ApplicationCommand
 import org.javacord.api.interaction.ApplicationCommandBuilder
 import org.javacord.api.interaction.SlashCommand
@@ -14,6 +16,25 @@ import java.util.concurrent.CompletableFuture
 
 object NexusDefaultSynchronizeMethods : NexusSynchronizeMethods {
 
+    /**
+     * Sends the requests that update and create one server command. Javacord's updaters and builders can only be sent
+     * through Javacord's own [DiscordApi], therefore, these are kept apart from the lookups of the commands.
+     */
+    @Volatile internal var requests: Requests = Requests.Javacord
+
+    internal interface Requests {
+        fun update(shard: DiscordApi, command: NexusCommand, applicationCommandId: Long, serverId: Long): CompletableFuture<SlashCommand>
+        fun create(shard: DiscordApi, command: NexusCommand, serverId: Long): CompletableFuture<SlashCommand>
+
+        object Javacord : Requests {
+            override fun update(shard: DiscordApi, command: NexusCommand, applicationCommandId: Long, serverId: Long) =
+                command.asSlashCommandUpdater(applicationCommandId).updateForServer(shard, serverId)
+
+            override fun create(shard: DiscordApi, command: NexusCommand, serverId: Long) =
+                command.asSlashCommand().createForServer(shard, serverId)
+        }
+    }
+
     override fun bulkOverwriteGlobal(shard: DiscordApi, applicationCommands: Set<ApplicationCommandBuilder<*, *, *>>) =
         shard
             .bulkOverwriteGlobalApplicationCommands(applicationCommands)
@@ -30,39 +51,75 @@ object NexusDefaultSynchronizeMethods : NexusSynchronizeMethods {
         }
 
         val server = shard.getServerById(serverId).orElseThrow()
+        val index = Nexus.commandManager.indexStore[command.uuid, serverId]
+            ?: return deleteFromList(server, command, serverId)
+
+        return shard.getServerSlashCommandById(server, index.applicationCommandId)
+            .thenCompose { slashCommand -> delete(slashCommand, serverId) }
+            .recoverIfNotFound { deleteFromList(server, command, serverId) }
+    }
+
+    private fun deleteFromList(server: Server, command: NexusCommand, serverId: Long): CompletableFuture<Void> {
         return server.slashCommands.thenCompose { slashCommands ->
             val slashCommand = find(command, from = slashCommands) ?: return@thenCompose CompletableFuture.completedFuture(null)
-            return@thenCompose slashCommand.delete().thenAccept {
-                Nexus.configuration.loggingTemplates.SERVER_COMMAND_DELETED(serverId, slashCommand).debug()
-            }
+            return@thenCompose delete(slashCommand, serverId)
         }
     }
 
+    private fun delete(slashCommand: SlashCommand, serverId: Long): CompletableFuture<Void> =
+        slashCommand.delete().thenAccept {
+            Nexus.configuration.loggingTemplates.SERVER_COMMAND_DELETED(serverId, slashCommand).debug()
+        }
+
     override fun updateForServer(shard: DiscordApi, command: NexusCommand, serverId: Long): CompletableFuture<ApplicationCommand> {
         if (shard.getServerById(serverId).isEmpty) {
             return getServerNotFoundErrorFrom(shard, serverId)
         }
 
         val server = shard.getServerById(serverId).orElseThrow()
+        val index = Nexus.commandManager.indexStore[command.uuid, serverId]
+            ?: return updateFromList(shard, server, command, serverId)
+
+        return update(shard, command, index.applicationCommandId, serverId)
+            .recoverIfNotFound { updateFromList(shard, server, command, serverId) }
+    }
+
+    private fun updateFromList(shard: DiscordApi, server: Server, command: NexusCommand, serverId: Long): CompletableFuture<ApplicationCommand> {
         return server.slashCommands.thenCompose { slashCommands ->
             val slashCommand = find(command, from = slashCommands) ?: return@thenCompose createForServer(shard, command, serverId)
-            return@thenCompose command.asSlashCommandUpdater(slashCommand.id)
-                .updateForServer(shard, serverId)
-                .and { Nexus.configuration.loggingTemplates.SERVER_COMMAND_UPDATED(serverId, it).debug() }
-                .thenApply { it as ApplicationCommand }
+            return@thenCompose update(shard, command, slashCommand.id, serverId)
         }
     }
 
+    private fun update(shard: DiscordApi, command: NexusCommand, applicationCommandId: Long, serverId: Long): CompletableFuture<ApplicationCommand> =
+        requests.update(shard, command, applicationCommandId, serverId)
+            .and { Nexus.configuration.loggingTemplates.SERVER_COMMAND_UPDATED(serverId, it).debug() }
+            .thenApply { it as ApplicationCommand }
+
     override fun createForServer(shard: DiscordApi, command: NexusCommand, serverId: Long) =
-        command
-            .asSlashCommand()
-            .createForServer(shard, serverId)
+        requests.create(shard, command, serverId)
             .and { Nexus.configuration.loggingTemplates.SERVER_COMMAND_CREATED(serverId, it).debug() }
             .thenApply { it as ApplicationCommand }
 
     private fun find(command: NexusCommand, from: Set<SlashCommand>): SlashCommand? =
         from.firstOrNull { `$command` -> `$command`.name.equals(command.name, ignoreCase = true) }
 
+    /**
+     * Falls back to the given task when the future fails because Discord no longer knows the command, which happens
+     * when the index is stale, for example, after the command was deleted outside of Nexus.
+     */
+    private fun <Type> CompletableFuture<Type>.recoverIfNotFound(fallback: () -> CompletableFuture<Type>): CompletableFuture<Type> =
+        this.handle { result, exception ->
+            if (exception == null) return@handle CompletableFuture.completedFuture(result)
+
+            var cause: Throwable? = exception
+            while (cause != null) {
+                if (cause is NotFoundException) return@handle fallback()
+                cause = cause.cause
+            }
+            CompletableFuture.failedFuture(exception)
+        }.thenCompose { it }
+
     private fun <Type> CompletableFuture<Type>.and(`do`: (Type) -> Unit): CompletableFuture<Type> =
         this.thenApply { `do`(it); return@thenApply it }
 
@@ -0,0 +1,12 @@
+package pw.mihou.nexus.features.command.synchronizer.records
+
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+
+/**
+ * A record of the last command set that was successfully synchronized for one scope.
+ *
+ * @param server the server of the scope, or null for the global scope.
+ * @param fingerprint the fingerprint of the command set that was synchronized.
+ * @param indexes the indexes of the application commands that Discord returned for the command set.
+ */
+data class NexusJournalEntry(val server: Long?, val fingerprint: String, val indexes: List<NexusMetaIndex>)
@@ -0,0 +1,13 @@
+package pw.mihou.nexus.features.command.synchronizer.records
+
+/**
+ * A summary of one synchronization, each scope (the global commands or the commands of one server) is counted once.
+ *
+ * @param skipped the scopes that were not pushed since their fingerprint did not change.
+ * @param updated the scopes that were pushed and were already known to Discord or Nexus.
+ * @param created the scopes that were pushed for the first time.
+ * @param failed the scopes that failed to synchronize.
+ */
+data class NexusSynchronizationReport(val skipped: Int, val updated: Int, val created: Int, val failed: Int) {
+    val total get() = skipped + updated + created + failed
+}
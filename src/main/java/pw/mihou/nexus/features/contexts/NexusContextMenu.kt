@@ -4,6 +4,8 @@ import org.javacord.api.entity.permission.PermissionType
 import org.javacord.api.event.interaction.MessageContextMenuCommandEvent
 import org.javacord.api.event.interaction.UserContextMenuCommandEvent
 import org.javacord.api.interaction.*
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.managers.core.NexusCommandManagerCore
 import pw.mihou.nexus.features.commons.NexusApplicationCommand
 import pw.mihou.nexus.core.reflective.annotations.*
 import pw.mihou.nexus.features.contexts.enums.ContextMenuKinds
@@ -42,6 +44,11 @@ class NexusContextMenu: NexusApplicationCommand {
 
     @WithDefault
     var serverIds = emptyList<Long>()
+        set(value) {
+            val previous = field
+            field = value
+            (Nexus.commandManager as? NexusCommandManagerCore)?.reindex(this, previous)
+        }
 
     @WithDefault
     var enabledInDms = true
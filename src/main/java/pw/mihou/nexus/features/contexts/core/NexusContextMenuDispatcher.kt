@@ -11,7 +11,7 @@ import pw.mihou.nexus.features.contexts.facade.NexusContextMenuHandler
 
 object NexusContextMenuDispatcher {
     fun dispatch(event: UserContextMenuCommandEvent, contextMenu: NexusContextMenu) {
-        Nexus.launcher.launch  {
+        Nexus.launcher.launch(event.interaction) {
             try {
                 val contextMenuEvent = NexusContextMenuEvent<UserContextMenuCommandEvent, UserContextMenuInteraction>(contextMenu, event, event.userContextMenuInteraction)
                 @Suppress("UNCHECKED_CAST")
@@ -25,7 +25,7 @@ object NexusContextMenuDispatcher {
     }
 
     fun dispatch(event: MessageContextMenuCommandEvent, contextMenu: NexusContextMenu) {
-        Nexus.launcher.launch  {
+        Nexus.launcher.launch(event.interaction) {
             try {
                 val contextMenuEvent = NexusContextMenuEvent<MessageContextMenuCommandEvent, MessageContextMenuInteraction>(contextMenu, event, event.messageContextMenuInteraction)
                 @Suppress("UNCHECKED_CAST")
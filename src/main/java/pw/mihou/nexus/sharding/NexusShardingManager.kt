@@ -3,19 +3,66 @@ package pw.mihou.nexus.sharding
 import org.javacord.api.DiscordApi
 import org.javacord.api.entity.server.Server
 import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.collections.NexusConcurrentLongMap
 import pw.mihou.nexus.express.core.NexusExpressCore
-import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.ReentrantLock
 import java.util.function.Predicate
+import kotlin.concurrent.withLock
 
 class NexusShardingManager internal constructor() {
 
-    private val shards = ConcurrentHashMap<Int, DiscordApi>()
+    /**
+     * The shards indexed by their number, the table is sized to the [totalShards] once it is known and grows to fit
+     * shards with a higher number otherwise. Lookups read the current table once and are allocation-free, while changes
+     * are serialized by the lock.
+     */
+    @Volatile private var shards: AtomicReferenceArray<DiscordApi?> = AtomicReferenceArray(0)
+    @Volatile private var connected = 0
+    @Volatile private var registeredTotalShards = 0
+
+    private val lock = ReentrantLock()
+
+    /**
+     * The routing table of servers to the shard that is responsible for them, this is filled when a shard is added and
+     * kept up to date through the server join, leave and availability events that [Nexus] receives.
+     */
+    private val routes = NexusConcurrentLongMap<DiscordApi>()
 
     /**
      * Gets the current size of the sharding manager.
      * @return the current size of the sharding manager (shows how many shards are registered in the manager).
      */
-    val size: Int get() = shards.size
+    val size: Int get() = connected
+
+    /**
+     * The total amount of shards that the bot runs with, this is used by [calculate] and as the default of every method
+     * that requires the total amount of shards. It is recommended to set this before the shards are added, otherwise,
+     * this falls back to the total amount of shards that the connected shards were started with and then to the amount
+     * of connected shards.
+     */
+    var totalShards: Int
+        get() {
+            val registered = registeredTotalShards
+            if (registered > 0) return registered
+
+            val reported = first()?.totalShards ?: 0
+            return if (reported > 0) reported else connected
+        }
+        set(value) {
+            require(value > 0) { "The total amount of shards must be greater than zero." }
+            lock.withLock {
+                ensureCapacity(value)
+                registeredTotalShards = value
+            }
+        }
+
+    /**
+     * Clears the registered total amount of shards, which makes [totalShards] fall back to the connected shards again.
+     */
+    internal fun resetTotalShards() {
+        registeredTotalShards = 0
+    }
 
     /**
      * Gets the shard with the given number.
@@ -23,14 +70,31 @@ class NexusShardingManager internal constructor() {
      * @param number the number of the shard.
      * @return the shard associated with the number.
      */
-    operator fun get(number: Int): DiscordApi? = shards[number]
+    operator fun get(number: Int): DiscordApi? {
+        val shards = shards
+        if (number < 0 || number >= shards.length()) return null
+        return shards.get(number)
+    }
 
     /**
      * Associates a shard based on the number provided, this overrides if the shard already exists.
      * @param shard the [DiscordApi] to add to the shard manager.
      */
      fun set(shard: DiscordApi) {
-        shards[shard.currentShard] = shard
+        val number = shard.currentShard
+        require(number >= 0) { "The shard number must not be negative." }
+
+        val previous = lock.withLock {
+            ensureCapacity(number + 1)
+            shards.getAndSet(number, shard).also { if (it == null) connected++ }
+        }
+        if (previous != null && previous !== shard) {
+            unroute(previous)
+        }
+
+        for (server in shard.servers) {
+            routes[server.id] = shard
+        }
         (Nexus.express as NexusExpressCore).ready(shard)
     }
 
@@ -38,7 +102,14 @@ class NexusShardingManager internal constructor() {
      * Gets all the shards in a collection.
      * @return all the [DiscordApi] in a collection.
      */
-    fun collection(): Collection<DiscordApi> = shards.values
+    fun collection(): Collection<DiscordApi> {
+        val shards = shards
+        val collection = ArrayList<DiscordApi>(connected)
+        for (index in 0 until shards.length()) {
+            collection.add(shards.get(index) ?: continue)
+        }
+        return collection
+    }
 
     /**
      * Finds a shard that matches the predicate provided.
@@ -49,26 +120,44 @@ class NexusShardingManager internal constructor() {
      * @param predicate the predicate that the shard must match.
      * @return the shard that matches the predicate if any.
      */
-    fun find(predicate: Predicate<DiscordApi>) = shards.values.firstOrNull { shard ->
-        predicate.test(shard)
+    fun find(predicate: Predicate<DiscordApi>): DiscordApi? {
+        val shards = shards
+        for (index in 0 until shards.length()) {
+            val shard = shards.get(index) ?: continue
+            if (predicate.test(shard)) return shard
+        }
+        return null
     }
 
     /**
      * Finds the shard that the server belongs to.
      *
-     * It is recommended to use [pw.mihou.nexus.express.NexusExpress.await] instead to wait for the shard since this method will
-     * scan the current known shards to see if any of the shards have the server.
+     * This is resolved from the routing table first, then from the shard that the sharding formula points to and
+     * only then by scanning the current known shards. It is recommended to use [pw.mihou.nexus.express.NexusExpress.await]
+     * instead to wait for the shard if the shard may not be connected yet.
      *
      * @param server the server to find.
      * @return the shard that is responsible for the server.
      */
-    fun shard(server: Long): DiscordApi? = find { shard -> shard.getServerById(server).isPresent }
+    fun shard(server: Long): DiscordApi? {
+        val route = routes[server]
+        if (route != null && this[route.currentShard] === route) {
+            return route
+        }
+
+        val shard = guess(server)?.takeIf { it.getServerById(server).isPresent }
+            ?: find { shard -> shard.getServerById(server).isPresent }
+            ?: return null
+
+        routes[server] = shard
+        return shard
+    }
 
     /**
-     * Gets the [Server] instance by searching all currently known shards to see if any of them are responsible for the server.
+     * Gets the [Server] instance from the shard that is responsible for the server, this uses the same resolution as [shard].
      *
-     * It is recommended to use [pw.mihou.nexus.express.NexusExpress.await] instead to wait  for the server since this method will scan
-     * the current known shards to see if any of the shards have the server.
+     * It is recommended to use [pw.mihou.nexus.express.NexusExpress.await] instead to wait for the server if the shard may
+     * not be connected yet.
      *
      * @param id the id of the server.
      * @return the [Server] instance that was found if any.
@@ -81,7 +170,67 @@ class NexusShardingManager internal constructor() {
      * @param shard the number of the shard.
      */
     fun remove(shard: Int) {
-        this.shards.remove(shard)
+        val previous = lock.withLock {
+            val shards = shards
+            if (shard < 0 || shard >= shards.length()) return
+            shards.getAndSet(shard, null)?.also { connected-- }
+        }
+        previous?.let { unroute(it) }
+    }
+
+    /**
+     * Routes the server to the shard, this is called when the shard receives the server.
+     *
+     * @param server the server to route.
+     * @param shard the shard that is responsible for the server.
+     */
+    internal fun route(server: Long, shard: DiscordApi) {
+        routes[server] = shard
+    }
+
+    /**
+     * Removes the route of the server if it still points to the shard, this is called when the shard loses the server.
+     *
+     * @param server the server to remove.
+     * @param shard the shard that was responsible for the server.
+     */
+    internal fun unroute(server: Long, shard: DiscordApi) {
+        routes.remove(server, shard)
+    }
+
+    private fun unroute(shard: DiscordApi) {
+        for (server in shard.servers) {
+            routes.remove(server.id, shard)
+        }
+    }
+
+    /**
+     * Guesses the shard of the server by using the sharding formula with the [totalShards].
+     */
+    private fun guess(server: Long): DiscordApi? {
+        val totalShards = totalShards
+        if (totalShards <= 0) return null
+
+        return this[calculate(server, totalShards)]
+    }
+
+    private fun first(): DiscordApi? {
+        val shards = shards
+        for (index in 0 until shards.length()) {
+            return shards.get(index) ?: continue
+        }
+        return null
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        val shards = shards
+        if (capacity <= shards.length()) return
+
+        val resized = AtomicReferenceArray<DiscordApi?>(capacity)
+        for (index in 0 until shards.length()) {
+            resized.set(index, shards.get(index))
+        }
+        this.shards = resized
     }
 
     /**
@@ -98,12 +247,12 @@ class NexusShardingManager internal constructor() {
      * Calculates the shard that the snowflake belongs by using the formula ((snowflake >> 22) % totalShards) which is
      * what Discord describes as the formula for shards.
      *
-     * Unlike the other method, this uses the internal known current amount of shards which can lead to miscalculations especially
-     * if all shards are not available. It is recommended to specify the total shards instead.
+     * Unlike the other method, this uses the [totalShards] which is only guaranteed to be correct when it was set or when
+     * at least one shard is connected.
      *
      * @param snowflake the snowflake or discord identifier.
      * @return the shard that the snowflake belongs to.
      */
-    fun calculate(snowflake: Long) = calculate(snowflake, shards.size)
+    fun calculate(snowflake: Long) = calculate(snowflake, totalShards.coerceAtLeast(1))
 
 }
\ No newline at end of file
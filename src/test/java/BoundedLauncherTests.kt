@@ -0,0 +1,117 @@
+import org.javacord.api.interaction.InteractionBase
+import org.javacord.api.interaction.callback.InteractionImmediateResponseBuilder
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.threadpool.NexusBoundedLauncher
+import pw.mihou.nexus.core.threadpool.NexusRejectionPolicies
+import pw.mihou.nexus.core.threadpool.NexusRejectionPolicy
+import java.lang.reflect.Proxy
+import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class BoundedLauncherTests {
+
+    @Test
+    @DisplayName("Caller runs rejected tasks on the launching thread")
+    fun `caller runs rejected tasks on the launching thread`() = saturated(NexusRejectionPolicies.CALLER_RUNS) { launcher ->
+        val thread = AtomicReference<Thread>()
+        launcher.launch(interaction(Instant.now())) { thread.set(Thread.currentThread()) }
+
+        assertSame(Thread.currentThread(), thread.get(), "The rejected task wasn't executed on the caller.")
+        assertEquals(1, launcher.rejected)
+        assertEquals(1, launcher.callerRan)
+        assertEquals(0, launcher.dropped)
+    }
+
+    @Test
+    @DisplayName("Drop if expired only drops expired interactions")
+    fun `drop if expired only drops expired interactions`() = saturated(NexusRejectionPolicies.DROP_IF_EXPIRED) { launcher ->
+        val executed = AtomicBoolean(false)
+        val expiredAt = Instant.now().minusMillis(Nexus.configuration.global.autoDeferAfterMilliseconds + 1_000)
+
+        launcher.launch(interaction(expiredAt)) { executed.set(true) }
+        assertFalse(executed.get(), "The task of an expired interaction was executed.")
+        assertEquals(1, launcher.dropped)
+
+        launcher.launch(interaction(Instant.now())) { executed.set(true) }
+        assertTrue(executed.getAndSet(false), "The task of an interaction within its deadline wasn't executed.")
+
+        launcher.launch { executed.set(true) }
+        assertTrue(executed.get(), "The task without an interaction wasn't executed.")
+
+        assertEquals(3, launcher.rejected)
+        assertEquals(2, launcher.callerRan)
+    }
+
+    @Test
+    @DisplayName("Respond busy answers the interaction and drops the task")
+    fun `respond busy answers the interaction and drops the task`() = saturated(NexusRejectionPolicies.RESPOND_BUSY) { launcher ->
+        val executed = AtomicBoolean(false)
+        val responded = AtomicBoolean(false)
+
+        launcher.launch(interaction(Instant.now(), responded)) { executed.set(true) }
+        assertTrue(responded.get(), "The interaction wasn't answered.")
+        assertFalse(executed.get(), "The rejected task was executed.")
+        assertEquals(1, launcher.dropped)
+
+        launcher.launch { executed.set(true) }
+        assertTrue(executed.get(), "The task without an interaction wasn't executed.")
+        assertEquals(1, launcher.callerRan)
+    }
+
+    /**
+     * Executes the test against a [NexusBoundedLauncher] whose only thread is blocked and whose queue is full,
+     * therefore, every task that is launched during the test is rejected.
+     */
+    private fun saturated(policy: NexusRejectionPolicy, test: (NexusBoundedLauncher) -> Unit) {
+        val launcher = NexusBoundedLauncher(concurrency = 1, queueCapacity = 1, policy = policy)
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+
+        try {
+            launcher.launch {
+                started.countDown()
+                release.await()
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS), "The blocking task wasn't started.")
+            launcher.launch { }
+            assertEquals(1, launcher.queueDepth)
+
+            test(launcher)
+        } finally {
+            release.countDown()
+            launcher.shutdown()
+        }
+    }
+
+    private fun interaction(createdAt: Instant, responded: AtomicBoolean = AtomicBoolean()): InteractionBase {
+        val type = InteractionImmediateResponseBuilder::class.java
+        val responder = Proxy.newProxyInstance(type.classLoader, arrayOf(type)) { proxy, method, _ ->
+            when {
+                method.name == "respond" -> {
+                    responded.set(true)
+                    CompletableFuture.completedFuture(null)
+                }
+                method.returnType.isAssignableFrom(type) -> proxy
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        }
+
+        return Proxy.newProxyInstance(InteractionBase::class.java.classLoader, arrayOf(InteractionBase::class.java)) { _, method, _ ->
+            when (method.name) {
+                "getCreationTimestamp" -> createdAt
+                "createImmediateResponder" -> responder
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as InteractionBase
+    }
+}
@@ -132,4 +132,20 @@ public class CommandGenerationTests {
         assertThrows(IndexIdentifierConflictException.class, () -> Nexus.command(new AlsoConflictedPingCommand()));
         assertDoesNotThrow(() -> Nexus.command(new NotConflictedPingCommand()));
     }
+
+    @Test
+    @DisplayName("Name Resolution After Association")
+    @Order(9)
+    void canResolveAfterAssociation() {
+        NexusCommand command = Nexus.command(new AssociatedTestCommand());
+        assertSame(command, Nexus.getCommandManager().get("associated", null));
+
+        command.associate(100L);
+        assertSame(command, Nexus.getCommandManager().get("Associated", 100L));
+        assertNull(Nexus.getCommandManager().get("associated", 200L));
+
+        command.disassociate(100L);
+        assertNull(Nexus.getCommandManager().get("associated", 100L));
+        assertSame(command, Nexus.getCommandManager().get("associated", null));
+    }
 }
@@ -0,0 +1,42 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.core.collections.NexusConcurrentLongMap
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class ConcurrentLongMapTests {
+
+    @Test
+    @DisplayName("Long map survives removals and resizes")
+    fun `long map survives removals and resizes`() {
+        val map = NexusConcurrentLongMap<String>(capacity = 2)
+        for (key in 0L until 1_000L) {
+            map[key] = key.toString()
+        }
+        for (key in 0L until 1_000L step 2) {
+            map.remove(key)
+        }
+
+        assertEquals(500, map.size)
+        assertNull(map[10L])
+        assertEquals("11", map[11L])
+
+        map[10L] = "ten"
+        assertEquals("ten", map[10L])
+        assertEquals(501, map.values().size)
+    }
+
+    @Test
+    @DisplayName("Long map replaces all entries at once")
+    fun `long map replaces all entries at once`() {
+        val map = NexusConcurrentLongMap<String>()
+        map[1L] = "1"
+        map[2L] = "2"
+
+        map.replaceAll(listOf("3", "4", "4")) { it.toLong() }
+
+        assertNull(map[1L])
+        assertEquals("3", map[3L])
+        assertEquals(2, map.size)
+    }
+}
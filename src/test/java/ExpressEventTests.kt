@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.express.event.core.NexusExpressEventCore
+import pw.mihou.nexus.express.event.status.NexusExpressEventStatus
+import stubs.InMemorySynchronizeMethods
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class ExpressEventTests {
+
+    @Test
+    @DisplayName("Express events never lose or repeat a transition under contention")
+    fun `express events never lose or repeat a transition under contention`() {
+        val shard = InMemorySynchronizeMethods().shard(0)
+        val executor = Executors.newFixedThreadPool(4)
+
+        try {
+            repeat(2_000) {
+                val executed = AtomicInteger()
+                val event = NexusExpressEventCore { executed.incrementAndGet() }
+
+                val transitions = ConcurrentLinkedQueue<NexusExpressEventStatus>()
+                event.addStatusChangeListener { _, _, newStatus -> transitions.add(newStatus) }
+
+                val start = CountDownLatch(1)
+                val done = CountDownLatch(4)
+                val actions = listOf<() -> Unit>(
+                    { event.process(shard) }, { event.process(shard) }, { event.cancel() }, { event.expire() }
+                )
+                for (action in actions) {
+                    executor.execute {
+                        start.await()
+                        action()
+                        done.countDown()
+                    }
+                }
+
+                start.countDown()
+                assertTrue(done.await(5, TimeUnit.SECONDS), "The actions didn't complete in time.")
+
+                val observed = transitions.toList()
+                when (event.status()) {
+                    NexusExpressEventStatus.FINISHED -> {
+                        assertEquals(listOf(NexusExpressEventStatus.PROCESSING, NexusExpressEventStatus.FINISHED), observed)
+                        assertEquals(1, executed.get())
+                    }
+                    NexusExpressEventStatus.STOPPED, NexusExpressEventStatus.EXPIRED -> {
+                        assertEquals(listOf(event.status()), observed)
+                        assertEquals(0, executed.get())
+                    }
+                    else -> throw AssertionError("The event ended in the ${event.status()} status.")
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    @DisplayName("Express only counts the events that it claims")
+    fun `express only counts the events that it claims`() {
+        val shard = 11
+        val queued = Nexus.express.queue(shard) { }
+        val cancelled = NexusExpressEventCore { }
+        cancelled.cancel()
+
+        assertFalse(cancelled.claim(), "A cancelled event was claimed.")
+
+        val claimed = NexusExpressEventCore { }
+        assertTrue(claimed.claim())
+        assertFalse(claimed.expire(), "A claimed event was expired.")
+        assertEquals(NexusExpressEventStatus.PROCESSING, claimed.status())
+
+        queued.cancel()
+        Nexus.sharding.set(InMemorySynchronizeMethods().shard(shard, shard + 1))
+        try {
+            assertEquals(0, Nexus.express.statistics(shard).dispatched, "A cancelled event was counted as dispatched.")
+        } finally {
+            Nexus.sharding.remove(shard)
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import stubs.InMemorySynchronizeMethods
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class ExpressTests {
+
+    @Test
+    @DisplayName("Express resolves server waiters past non-matching predicates")
+    fun `express resolves server waiters past non-matching predicates`() {
+        val server = 5L shl 22
+        val methods = InMemorySynchronizeMethods()
+
+        val unmatched = Nexus.express.queue({ false }) { }
+        val future = Nexus.express.await(server)
+        val shared = Nexus.express.await(server)
+        val shard = Nexus.express.await(0)
+
+        Nexus.sharding.set(methods.shard(0, 1, listOf(server)))
+        try {
+            assertEquals(server, future.get(5, TimeUnit.SECONDS).id)
+            assertSame(future.get(), shared.get(5, TimeUnit.SECONDS))
+            assertEquals(0, shard.get(5, TimeUnit.SECONDS).currentShard)
+        } finally {
+            unmatched.cancel()
+            Nexus.sharding.remove(0)
+        }
+    }
+
+    @Test
+    @DisplayName("Express unlinks cancelled requests from their queue")
+    fun `express unlinks cancelled requests from their queue`() {
+        val first = Nexus.express.queue(7) { }
+        val second = Nexus.express.queue(7) { }
+        assertEquals(2, Nexus.express.statistics(7).queued)
+
+        first.cancel()
+        assertEquals(1, Nexus.express.statistics(7).queued)
+
+        second.cancel()
+        assertEquals(0, Nexus.express.statistics(7).queued)
+    }
+
+    @Test
+    @DisplayName("Express batches servers by their shard")
+    fun `express batches servers by their shard`() {
+        val methods = InMemorySynchronizeMethods()
+        val servers = (1L..6L).map { it shl 22 }
+
+        // The batch is requested before any shard is connected, therefore, the total amount of shards is unknown.
+        val batches = AtomicInteger()
+        val future = Nexus.express.batch(servers) { shard, shardServers ->
+            batches.incrementAndGet()
+            shardServers.associateWith { shard.currentShard }
+        }
+
+        Nexus.sharding.set(methods.shard(0, 2))
+        Nexus.sharding.set(methods.shard(1, 2))
+        try {
+            val result = future.get(5, TimeUnit.SECONDS)
+
+            assertEquals(2, batches.get())
+            assertEquals(servers.associateWith { Nexus.sharding.calculate(it, 2) }, result.results)
+            assertTrue(result.failures.isEmpty())
+        } finally {
+            Nexus.sharding.remove(0)
+            Nexus.sharding.remove(1)
+        }
+    }
+}
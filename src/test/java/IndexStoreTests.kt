@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import pw.mihou.nexus.core.managers.indexes.defaults.InMemoryIndexStore
+import pw.mihou.nexus.core.managers.indexes.defaults.MappedIndexStore
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import kotlin.test.assertEquals
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class IndexStoreTests {
+
+    @Test
+    @DisplayName("Index store resolves and mentions by command and server")
+    fun `index store resolves and mentions by command and server`() {
+        val store = InMemoryIndexStore()
+        store.addAll(listOf(
+            NexusMetaIndex(command = "ping", applicationCommandId = 1L, server = null),
+            NexusMetaIndex(command = "ping", applicationCommandId = 2L, server = 10L)
+        ))
+
+        assertEquals(1L, store["ping", null]?.applicationCommandId)
+        assertEquals(2L, store["ping", 10L]?.applicationCommandId)
+        assertEquals("</ping:2>", store.mentionOne(10L, "ping", default = "none"))
+
+        store.add(NexusMetaIndex(command = "pong", applicationCommandId = 2L, server = 10L))
+        assertNull(store["ping", 10L])
+        assertEquals("</pong:2>", store.mentionOne(10L, "pong", default = "none"))
+        assertEquals("none", store.mentionOne(10L, "ping", default = "none"))
+    }
+
+    @Test
+    @DisplayName("Mapped index store restores indexes after reopening")
+    fun `mapped index store restores indexes after reopening`(@TempDir directory: Path) {
+        val path = directory.resolve("indexes.bin")
+        MappedIndexStore(path, compactionThreshold = 1).use { store ->
+            store.add(NexusMetaIndex(command = "ping", applicationCommandId = 1L, server = null))
+            store.add(NexusMetaIndex(command = "ping", applicationCommandId = 2L, server = 10L))
+            store.add(NexusMetaIndex(command = "pong", applicationCommandId = 2L, server = 10L))
+            store.add(NexusMetaIndex(command = "pong", applicationCommandId = 3L, server = 11L))
+        }
+
+        MappedIndexStore(path).use { store ->
+            assertEquals(3, store.all().size)
+            assertEquals("ping", store[1L]?.command)
+            assertEquals("pong", store[2L]?.command)
+            assertEquals(3L, store["pong", 11L]?.applicationCommandId)
+            assertNull(store["ping", 10L])
+        }
+    }
+
+    @Test
+    @DisplayName("Mapped index store discards torn headers and records")
+    fun `mapped index store discards torn headers and records`(@TempDir directory: Path) {
+        val path = directory.resolve("indexes.bin")
+
+        Files.write(path, byteArrayOf(0x4E, 0x58))
+        MappedIndexStore(path).use { store ->
+            assertTrue(store.all().isEmpty(), "A torn header wasn't treated as an empty store.")
+            store.add(NexusMetaIndex(command = "ping", applicationCommandId = 1L, server = null))
+        }
+
+        MappedIndexStore(path).use { store -> assertEquals("ping", store[1L]?.command) }
+
+        val bytes = Files.readAllBytes(path)
+        Files.write(path, bytes + byteArrayOf(0, 0, 0, 0, 0, 0, 0, 2))
+        MappedIndexStore(path).use { store ->
+            assertEquals(1, store.all().size, "The torn record wasn't discarded.")
+            store.add(NexusMetaIndex(command = "pong", applicationCommandId = 2L, server = 10L))
+            store.compact()
+        }
+
+        MappedIndexStore(path).use { store ->
+            assertEquals(2, store.all().size)
+            assertEquals("pong", store["pong", 10L]?.command)
+        }
+
+        Files.write(path, ByteArray(16) { 7 })
+        MappedIndexStore(path).use { store -> assertTrue(store.all().isEmpty(), "A corrupt header wasn't treated as an empty store.") }
+        assertEquals(5L, Files.size(path), "The corrupt file wasn't reset to an empty store.")
+    }
+
+    @Test
+    @DisplayName("Mapped index store discards records with an unknown scope")
+    fun `mapped index store discards records with an unknown scope`(@TempDir directory: Path) {
+        val path = directory.resolve("indexes.bin")
+        MappedIndexStore(path).use { store ->
+            store.add(NexusMetaIndex(command = "ping", applicationCommandId = 1L, server = null))
+            store.add(NexusMetaIndex(command = "pong", applicationCommandId = 2L, server = 10L))
+        }
+
+        // The header is 5 bytes and the first record is 23 bytes, the scope flag follows the identifier of a record.
+        val bytes = Files.readAllBytes(path)
+        bytes[5 + 23 + 8] = 7
+        Files.write(path, bytes)
+
+        MappedIndexStore(path).use { store ->
+            assertEquals(1, store.all().size, "The damaged record wasn't discarded.")
+            assertNull(store["pong", null], "The damaged record was read as a global index.")
+            assertNull(store[2L])
+        }
+        assertEquals(5L + 23, Files.size(path), "The file wasn't truncated at the damaged record.")
+    }
+}
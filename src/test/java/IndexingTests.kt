@@ -0,0 +1,63 @@
+import commands.IndexedTestCommand
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.exceptions.NexusFailedActionException
+import stubs.InMemorySynchronizeMethods
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class IndexingTests {
+
+    @Test
+    @DisplayName("Indexing fetches the servers of each shard with a bounded concurrency")
+    fun `indexing fetches the servers of each shard with a bounded concurrency`() {
+        val methods = InMemorySynchronizeMethods()
+
+        val servers = List(16) { (it + 1L) shl 22 }
+        val failing = servers.last()
+        val shards = List(2) { methods.shard(it, 2, servers) }
+
+        val configuration = Nexus.configuration.global
+        val concurrency = configuration.indexingConcurrencyPerShard
+        val command = Nexus.command(IndexedTestCommand())
+
+        command.associate(*servers.toTypedArray())
+        shards.forEach(Nexus.sharding::set)
+        try {
+            // The commands are created one at a time, therefore, only the indexing can fetch more than one at a time.
+            for (server in servers) {
+                methods.createForServer(shards[Nexus.sharding.calculate(server, 2)], command, server).join()
+            }
+            methods.failure = { route, server ->
+                if (route == "fetchServer" && server == failing) NexusFailedActionException("Missing access.")
+                else null
+            }
+
+            configuration.indexingConcurrencyPerShard = 2
+            methods.latencyInMilliseconds = 50
+            Nexus.commandManager.index()
+
+            assertEquals(servers.size.toLong(), methods.requests("fetchServer"), "Not every server was fetched once.")
+            for (shard in shards.indices) {
+                assertEquals(2, methods.peakInFlight(shard), "The shard $shard didn't fetch with the configured concurrency.")
+            }
+
+            for (server in servers) {
+                if (server == failing) {
+                    assertNull(Nexus.commandManager.indexStore[command.uuid, server], "A server that failed to be fetched was indexed.")
+                    continue
+                }
+                assertEquals(
+                    methods.commands(server).single().id,
+                    Nexus.commandManager.indexStore[command.uuid, server]?.applicationCommandId,
+                    "The server $server wasn't indexed."
+                )
+            }
+        } finally {
+            configuration.indexingConcurrencyPerShard = concurrency
+            shards.indices.forEach(Nexus.sharding::remove)
+            command.disassociate(*servers.toTypedArray())
+        }
+    }
+}
@@ -1,10 +1,32 @@
+import commands.AsyncMiddlewaresCommand
+import commands.HasMiddlewaresCommand
 import interceptors.NamedMiddleware
+import org.javacord.api.entity.channel.TextChannel
+import org.javacord.api.event.interaction.SlashCommandCreateEvent
+import org.javacord.api.interaction.SlashCommandInteraction
 import org.junit.jupiter.api.DisplayName
 import org.junit.jupiter.api.Order
 import org.junit.jupiter.api.Test
 import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.features.command.core.NexusCommandCore
+import pw.mihou.nexus.features.command.core.NexusCommandDispatcher
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent
+import pw.mihou.nexus.features.command.facade.NexusMiddlewareEvent
 import pw.mihou.nexus.features.command.interceptors.core.NexusCommandInterceptorCore
+import pw.mihou.nexus.features.command.interceptors.facades.NexusAfterware
+import pw.mihou.nexus.features.command.interceptors.facades.NexusAsyncMiddleware
+import pw.mihou.nexus.features.command.interceptors.facades.NexusMiddleware
+import java.lang.reflect.Proxy
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
 import kotlin.test.assertTrue
 
 class InterceptorTests {
@@ -19,4 +41,136 @@ class InterceptorTests {
         assertEquals("pw.mihou.middleware", middlewareName, "Middleware name doesn't match intended name.")
         assertTrue(NexusCommandInterceptorCore.has("pw.mihou.middleware"), "Middleware wasn't added.")
     }
+
+    @Test
+    @DisplayName("Recompile pipeline on global middleware change")
+    @Order(2)
+    fun `recompile pipeline on global middleware change`() {
+        val command = Nexus.manifest(HasMiddlewaresCommand()) as NexusCommandCore
+        val pipeline = NexusCommandInterceptorCore.pipeline(command)
+        assertSame(pipeline, NexusCommandInterceptorCore.pipeline(command), "Pipeline was recompiled without any changes.")
+
+        Nexus.interceptors.middleware("pw.mihou.pipeline", NamedMiddleware)
+        Nexus.addGlobalMiddlewares("pw.mihou.pipeline")
+
+        val recompiled = NexusCommandInterceptorCore.pipeline(command)
+        assertNotSame(pipeline, recompiled, "Pipeline wasn't recompiled after the global middlewares changed.")
+        assertTrue(recompiled.middlewareNames.contains("pw.mihou.pipeline"), "Global middleware wasn't included in the pipeline.")
+
+        Nexus.configuration.global.middlewares.remove("pw.mihou.pipeline")
+    }
+
+    @Test
+    @DisplayName("Asynchronous middleware that completes later continues the chain")
+    fun `asynchronous middleware that completes later continues the chain`() {
+        val middlewares = ConcurrentLinkedQueue<String>()
+        val outcome = dispatch(
+            async { event ->
+                val future = CompletableFuture<Void>()
+                Nexus.launch.scheduler.launch(50) {
+                    middlewares += "later"
+                    event.next()
+                    future.complete(null)
+                }
+                future
+            },
+            NexusMiddleware { middlewares += "after" }
+        )
+
+        assertTrue(outcome.handled.await(5, TimeUnit.SECONDS), "The command wasn't executed after the middleware completed.")
+        assertTrue(outcome.finished.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("later", "after"), middlewares.toList())
+        assertEquals(listOf("dispatched"), outcome.afterwares.toList())
+    }
+
+    @Test
+    @DisplayName("Failed asynchronous middleware stops the command")
+    fun `failed asynchronous middleware stops the command`() {
+        val failures = listOf<(NexusMiddlewareEvent) -> CompletionStage<Void>>(
+            { CompletableFuture.failedFuture(IllegalStateException("The middleware failed.")) },
+            { throw IllegalStateException("The middleware failed.") }
+        )
+
+        for (failure in failures) {
+            val middlewares = ConcurrentLinkedQueue<String>()
+            val outcome = dispatch(async(failure), NexusMiddleware { middlewares += "after" })
+
+            assertTrue(outcome.finished.await(5, TimeUnit.SECONDS), "The command wasn't stopped.")
+            assertEquals(listOf("failed"), outcome.afterwares.toList())
+            assertEquals(outcome.names[0], outcome.blocker, "The failed middleware wasn't reported as the blocker.")
+            assertTrue(middlewares.isEmpty(), "The chain continued after the middleware failed.")
+            assertEquals(1, outcome.handled.count, "The command was executed after the middleware failed.")
+        }
+    }
+
+    @Test
+    @DisplayName("Asynchronous middleware that never completes never executes the command")
+    fun `asynchronous middleware that never completes never executes the command`() {
+        val middlewares = ConcurrentLinkedQueue<String>()
+        val outcome = dispatch(async { CompletableFuture() }, NexusMiddleware { middlewares += "after" })
+
+        assertFalse(outcome.finished.await(200, TimeUnit.MILLISECONDS), "The command was dispatched without a decision.")
+        assertTrue(middlewares.isEmpty(), "The chain continued without a decision.")
+        assertEquals(1, outcome.handled.count, "The command was executed without a decision.")
+    }
+
+    /**
+     * What happened to one dispatched event, [handled] is counted down once the command is executed and [finished] once
+     * the afterwares are executed, regardless of whether the command was dispatched or stopped.
+     */
+    private class Outcome(val names: List<String>) {
+        val handled = CountDownLatch(1)
+        val finished = CountDownLatch(1)
+        val afterwares = ConcurrentLinkedQueue<String>()
+        @Volatile var blocker: String? = null
+    }
+
+    private fun async(middleware: (NexusMiddlewareEvent) -> CompletionStage<Void>) = object: NexusAsyncMiddleware {
+        override fun onBeforeCommandAsync(event: NexusMiddlewareEvent): CompletionStage<Void> = middleware(event)
+    }
+
+    /**
+     * Dispatches an event of a command with the given middlewares onto the dispatcher, the event is a stand-in that
+     * only supports what the dispatcher needs when no middleware responds.
+     */
+    private fun dispatch(vararg middlewares: NexusMiddleware): Outcome {
+        val outcome = Outcome(middlewares.map { Nexus.interceptors.middleware(middleware = it) })
+        val afterware = Nexus.interceptors.afterware(afterware = object: NexusAfterware {
+            override fun onAfterCommandExecution(event: NexusCommandEvent) {
+                outcome.afterwares += "dispatched"
+                outcome.finished.countDown()
+            }
+
+            override fun onFailedDispatch(event: NexusCommandEvent) {
+                outcome.blocker = event[NexusAfterware.BLOCKING_MIDDLEWARE_KEY] as? String
+                outcome.afterwares += "failed"
+                outcome.finished.countDown()
+            }
+        })
+
+        val command = Nexus.manifest(AsyncMiddlewaresCommand(outcome.names, listOf(afterware)) { outcome.handled.countDown() })
+        NexusCommandDispatcher.dispatch(command as NexusCommandCore, event())
+        return outcome
+    }
+
+    private fun event(): SlashCommandCreateEvent {
+        val channel = stub(TextChannel::class.java) { null }
+        val interaction = stub(SlashCommandInteraction::class.java) { name ->
+            if (name == "getChannel") Optional.of(channel) else null
+        }
+        return stub(SlashCommandCreateEvent::class.java) { name ->
+            if (name == "getSlashCommandInteraction" || name == "getInteraction") interaction else null
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> stub(type: Class<T>, handler: (String) -> Any?): T =
+        Proxy.newProxyInstance(type.classLoader, arrayOf(type)) { proxy, method, args ->
+            when (method.name) {
+                "equals" -> proxy === args?.get(0)
+                "hashCode" -> System.identityHashCode(proxy)
+                "toString" -> "Stub${type.simpleName}"
+                else -> handler(method.name) ?: throw UnsupportedOperationException(method.name)
+            }
+        } as T
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.threadpool.NexusThreadPool
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class LaunchConfigurationTests {
+
+    @Test
+    @DisplayName("Virtual threads fall back to the platform thread pools when unsupported")
+    fun `virtual threads fall back to the platform thread pools when unsupported`() {
+        val configuration = Nexus.configuration.launch
+        val launcher = configuration.launcher
+        val scheduler = configuration.scheduler
+
+        try {
+            val supported = NexusThreadPool.isVirtualThreadsSupported()
+            assertEquals(supported, configuration.useVirtualThreads())
+
+            if (supported) {
+                assertNotNull(NexusThreadPool.virtualExecutorService())
+                assertNotNull(NexusThreadPool.virtualScheduledExecutorService())
+            } else {
+                assertNull(NexusThreadPool.virtualExecutorService())
+                assertNull(NexusThreadPool.virtualScheduledExecutorService())
+                assertSame(launcher, configuration.launcher, "The launcher was replaced on a JVM without virtual threads.")
+                assertSame(scheduler, configuration.scheduler, "The scheduler was replaced on a JVM without virtual threads.")
+            }
+
+            configuration.usePlatformThreads()
+
+            val latch = CountDownLatch(2)
+            configuration.launcher.launch { latch.countDown() }
+            configuration.scheduler.launch(10) { latch.countDown() }
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "The platform thread pools didn't execute the tasks.")
+        } finally {
+            configuration.launcher = launcher
+            configuration.scheduler = scheduler
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.express.core.NexusExpressCore
+import pw.mihou.nexus.express.selection.NexusShardSelectors
+import stubs.InMemorySynchronizeMethods
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+
+class ShardSelectorTests {
+
+    @Test
+    @DisplayName("Round robin cycles through the shards")
+    fun `round robin cycles through the shards`() {
+        val methods = InMemorySynchronizeMethods()
+        val shards = (0 until 3).map { methods.shard(it, 3) }
+        val selector = NexusShardSelectors.roundRobin()
+
+        val selected = (0 until 6).map { selector.select(shards).currentShard }
+        assertEquals(listOf(0, 1, 2, 0, 1, 2), selected)
+    }
+
+    @Test
+    @DisplayName("Least in-flight counts the work that runs on a selected shard")
+    fun `least in-flight counts the work that runs on a selected shard`() {
+        val methods = InMemorySynchronizeMethods()
+        val first = methods.shard(0, 2)
+        val second = methods.shard(1, 2)
+        val express = Nexus.express as NexusExpressCore
+        val selector = NexusShardSelectors.leastInFlight()
+
+        val configuration = Nexus.configuration.express
+        val previous = configuration.shardSelector
+
+        Nexus.sharding.set(first)
+        Nexus.sharding.set(second)
+        configuration.shardSelector = selector
+        try {
+            val work = CompletableFuture<Unit>()
+            val result = express.withAvailable { shard ->
+                assertSame(first, shard, "The least in-flight selector didn't pick the first idle shard.")
+                work
+            }
+
+            assertEquals(1, express.inFlight(0), "The work on the selected shard wasn't counted as in flight.")
+            assertSame(second, selector.select(listOf(first, second)), "The busy shard was selected.")
+
+            work.complete(Unit)
+            result.get(5, TimeUnit.SECONDS)
+            assertEquals(0, express.inFlight(0), "The completed work was still counted as in flight.")
+            assertSame(first, selector.select(listOf(first, second)))
+        } finally {
+            configuration.shardSelector = previous
+            Nexus.sharding.remove(0)
+            Nexus.sharding.remove(1)
+        }
+    }
+}
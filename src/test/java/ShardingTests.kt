@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import stubs.InMemorySynchronizeMethods
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class ShardingTests {
+
+    @Test
+    @DisplayName("Sharding manager routes servers to their shard")
+    fun `sharding manager routes servers to their shard`() {
+        val methods = InMemorySynchronizeMethods()
+        val first = methods.shard(0, 2)
+        val second = methods.shard(1, 2)
+
+        Nexus.sharding.set(first)
+        Nexus.sharding.set(second)
+        try {
+            assertEquals(2, Nexus.sharding.totalShards)
+            assertSame(second, Nexus.sharding[1])
+            assertNull(Nexus.sharding[2])
+
+            assertSame(first, Nexus.sharding.shard(2L shl 22))
+            assertSame(second, Nexus.sharding.shard(3L shl 22))
+            assertEquals(3L shl 22, Nexus.sharding.server(3L shl 22)?.id)
+
+            Nexus.sharding.remove(1)
+            assertNull(Nexus.sharding.shard(3L shl 22))
+        } finally {
+            Nexus.sharding.remove(0)
+            Nexus.sharding.remove(1)
+        }
+    }
+
+    @Test
+    @DisplayName("Sharding manager prefers the registered total amount of shards")
+    fun `sharding manager prefers the registered total amount of shards`() {
+        val methods = InMemorySynchronizeMethods()
+
+        Nexus.sharding.set(methods.shard(0, 2))
+        try {
+            assertEquals(2, Nexus.sharding.totalShards)
+
+            Nexus.sharding.totalShards = 4
+            assertEquals(4, Nexus.sharding.totalShards)
+            assertEquals(3, Nexus.sharding.calculate(7L shl 22))
+
+            Nexus.sharding.resetTotalShards()
+            assertEquals(2, Nexus.sharding.totalShards, "The total amount of shards didn't fall back to the connected shards.")
+        } finally {
+            Nexus.sharding.resetTotalShards()
+            Nexus.sharding.remove(0)
+        }
+    }
+}
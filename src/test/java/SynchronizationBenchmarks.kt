@@ -0,0 +1,113 @@
+import commands.BenchmarkTestCommand
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestInstance
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.features.command.facade.NexusCommand
+import pw.mihou.nexus.features.command.synchronizer.journal.defaults.InMemorySynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.overwrites.defaults.NexusDefaultSynchronizeMethods
+import stubs.InMemorySynchronizeMethods
+import java.util.concurrent.CompletableFuture
+import kotlin.test.assertEquals
+
+/**
+ * Measures the synchronizer and the indexing against [InMemorySynchronizeMethods] with a simulated latency, these are
+ * skipped unless the tests are run with `-Dnexus.benchmarks=true` since they take a while.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "nexus.benchmarks", matches = "true")
+class SynchronizationBenchmarks {
+
+    private val methods = InMemorySynchronizeMethods()
+    private lateinit var command: NexusCommand
+
+    companion object {
+        private const val TOTAL_SHARDS = 4
+        private const val LATENCY_IN_MILLISECONDS = 5L
+    }
+
+    @BeforeAll
+    fun setup() {
+        methods.latencyInMilliseconds = LATENCY_IN_MILLISECONDS
+
+        for (shard in 0 until TOTAL_SHARDS) {
+            Nexus.sharding.set(methods.shard(shard, TOTAL_SHARDS))
+        }
+        Nexus.synchronizer.methods = methods
+        command = Nexus.command(BenchmarkTestCommand())
+    }
+
+    @AfterAll
+    fun teardown() {
+        for (shard in 0 until TOTAL_SHARDS) {
+            Nexus.sharding.remove(shard)
+        }
+        Nexus.synchronizer.methods = NexusDefaultSynchronizeMethods
+    }
+
+    @Test
+    @DisplayName("Synchronize, batch update, upsert and index 10 servers")
+    fun `synchronize, batch update, upsert and index 10 servers`() = benchmark(10)
+
+    @Test
+    @DisplayName("Synchronize, batch update, upsert and index 1,000 servers")
+    fun `synchronize, batch update, upsert and index 1,000 servers`() = benchmark(1_000)
+
+    @Test
+    @DisplayName("Synchronize, batch update, upsert and index 10,000 servers")
+    fun `synchronize, batch update, upsert and index 10,000 servers`() = benchmark(10_000)
+
+    @Test
+    @DisplayName("Synchronize, batch update, upsert and index 100 servers under Discord's rate-limits")
+    fun `synchronize, batch update, upsert and index 100 servers under Discord's rate-limits`() {
+        methods.globalRateLimit = InMemorySynchronizeMethods.RateLimit(50, 1000)
+        methods.routeRateLimit = InMemorySynchronizeMethods.RateLimit(5, 5000)
+        try {
+            benchmark(100)
+        } finally {
+            methods.globalRateLimit = null
+            methods.routeRateLimit = null
+        }
+    }
+
+    private fun benchmark(size: Int) {
+        val servers = LongArray(size) { (it + 1L) shl 22 }
+        methods.reset()
+        Nexus.synchronizer.journal = InMemorySynchronizationJournal()
+        command.associate(*servers.toTypedArray())
+
+        try {
+            measure("synchronize (cold)", size) { Nexus.synchronizer.synchronize().join() }
+            assertEquals(size.toLong(), methods.requests("bulkOverwriteServer"))
+
+            measure("synchronize (unchanged)", size) { Nexus.synchronizer.synchronize().join() }
+            assertEquals(size.toLong(), methods.requests("bulkOverwriteServer"))
+
+            Nexus.synchronizer.journal = InMemorySynchronizationJournal()
+            measure("synchronize (unchanged, compared with live)", size) { Nexus.synchronizer.synchronize().join() }
+            assertEquals(size.toLong(), methods.requests("bulkOverwriteServer"))
+            assertEquals(2L * size, methods.requests("fetchServer"))
+
+            measure("batchUpdate", size) {
+                CompletableFuture.allOf(*servers.map { Nexus.synchronizer.batchUpdate(it) }.toTypedArray()).join()
+            }
+            measure("upsert", size) { Nexus.synchronizer.upsert(command, TOTAL_SHARDS, *servers).join() }
+            measure("index", size) { Nexus.commandManager.index() }
+
+            assertEquals(size, servers.count { Nexus.commandManager.indexStore[command.uuid, it] != null })
+        } finally {
+            command.disassociate(*servers.toTypedArray())
+        }
+    }
+
+    private fun measure(name: String, size: Int, task: () -> Unit) {
+        val requests = methods.totalRequests
+        val start = System.nanoTime()
+        task()
+        val elapsed = (System.nanoTime() - start) / 1_000_000
+        Nexus.logger.info("$name for $size servers took ${elapsed}ms with ${methods.totalRequests - requests} requests.")
+    }
+}
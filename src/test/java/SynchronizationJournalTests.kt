@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import pw.mihou.nexus.features.command.synchronizer.journal.defaults.FileSynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.records.NexusJournalEntry
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SynchronizationJournalTests {
+
+    @Test
+    @DisplayName("File journal reloads what it persisted")
+    fun `file journal reloads what it persisted`(@TempDir directory: Path) {
+        val path = directory.resolve("journal.bin")
+        val global = NexusJournalEntry(null, "global-fingerprint", listOf(NexusMetaIndex("ping", 1L, null)))
+        val server = NexusJournalEntry(10L, "server-fingerprint", listOf(
+            NexusMetaIndex("ping", 2L, 10L),
+            NexusMetaIndex("pong", 3L, 10L)
+        ))
+
+        val journal = FileSynchronizationJournal(path)
+        journal.record(global)
+        journal.record(server)
+        journal.record(NexusJournalEntry(20L, "removed", emptyList()))
+        journal.remove(20L)
+        journal.flush()
+
+        val reloaded = FileSynchronizationJournal(path)
+        assertEquals(global, reloaded[null])
+        assertEquals(server, reloaded[10L])
+        assertNull(reloaded[20L], "The removed entry was persisted.")
+        assertEquals(2, reloaded.all().size)
+        assertTrue(Files.notExists(path.resolveSibling("journal.bin.tmp")), "The temporary file was left behind.")
+    }
+
+    @Test
+    @DisplayName("File journal discards corrupt and partial files")
+    fun `file journal discards corrupt and partial files`(@TempDir directory: Path) {
+        val path = directory.resolve("journal.bin")
+
+        Files.write(path, byteArrayOf(1, 2, 3, 4, 5, 6, 7, 8))
+        assertTrue(FileSynchronizationJournal(path).all().isEmpty(), "A corrupt journal wasn't discarded.")
+
+        val journal = FileSynchronizationJournal(path)
+        journal.record(NexusJournalEntry(10L, "server-fingerprint", listOf(NexusMetaIndex("ping", 2L, 10L))))
+        journal.flush()
+
+        val bytes = Files.readAllBytes(path)
+        Files.write(path, bytes.copyOf(bytes.size - 4))
+        assertTrue(FileSynchronizationJournal(path).all().isEmpty(), "A partially written journal wasn't discarded.")
+
+        Files.write(path, ByteArray(0))
+        assertTrue(FileSynchronizationJournal(path).all().isEmpty(), "An empty journal wasn't discarded.")
+    }
+}
@@ -0,0 +1,263 @@
+import commands.SynchronizedTestCommand
+import org.javacord.api.DiscordApi
+import org.javacord.api.entity.server.Server
+import org.javacord.api.exception.MissingPermissionsException
+import org.javacord.api.exception.NotFoundException
+import org.javacord.api.interaction.SlashCommand
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.exceptions.NexusFailedActionException
+import pw.mihou.nexus.features.command.facade.NexusCommand
+import pw.mihou.nexus.features.command.synchronizer.overwrites.defaults.NexusDefaultSynchronizeMethods
+import java.lang.reflect.Proxy
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+import kotlin.test.assertTrue
+
+class SynchronizeMethodsTests {
+
+    @Test
+    @DisplayName("Delete looks up the indexed command before listing the commands of the server")
+    fun `delete looks up the indexed command before listing the commands of the server`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+        val server = LocalServer(SERVER)
+
+        val id = server.create(command.name)
+        Nexus.commandManager.index(command, id, SERVER)
+
+        NexusDefaultSynchronizeMethods.deleteForServer(server.shard, command, SERVER).join()
+        assertEquals(listOf("getServerSlashCommandById:$id", "delete:$id"), server.calls.toList(), "The indexed command wasn't deleted directly.")
+        assertTrue(server.commands.isEmpty())
+    }
+
+    @Test
+    @DisplayName("Delete falls back to listing the commands of the server when the index is stale or missing")
+    fun `delete falls back to listing the commands of the server when the index is stale or missing`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+
+        val stale = LocalServer(STALE_SERVER)
+        val id = stale.create(command.name)
+        Nexus.commandManager.index(command, id + 1, STALE_SERVER)
+
+        NexusDefaultSynchronizeMethods.deleteForServer(stale.shard, command, STALE_SERVER).join()
+        assertEquals(listOf("getServerSlashCommandById:${id + 1}", "getSlashCommands", "delete:$id"), stale.calls.toList(), "A stale index wasn't recovered from.")
+        assertTrue(stale.commands.isEmpty())
+
+        val unindexed = LocalServer(UNINDEXED_SERVER)
+        val unindexedId = unindexed.create(command.name)
+
+        NexusDefaultSynchronizeMethods.deleteForServer(unindexed.shard, command, UNINDEXED_SERVER).join()
+        assertEquals(listOf("getSlashCommands", "delete:$unindexedId"), unindexed.calls.toList(), "An unindexed command wasn't looked up from the list.")
+        assertTrue(unindexed.commands.isEmpty())
+    }
+
+    @Test
+    @DisplayName("Only a command that cannot be found falls back to listing the commands of the server")
+    fun `only a command that cannot be found falls back to listing the commands of the server`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+        val server = LocalServer(FORBIDDEN_SERVER)
+
+        val id = server.create(command.name)
+        Nexus.commandManager.index(command, id, FORBIDDEN_SERVER)
+        server.failure = MissingPermissionsException(null, "Missing access.", null, null)
+
+        val exception = assertFailsWith<CompletionException> {
+            NexusDefaultSynchronizeMethods.deleteForServer(server.shard, command, FORBIDDEN_SERVER).join()
+        }
+        assertIs<MissingPermissionsException>(exception.cause)
+        assertEquals(listOf("getServerSlashCommandById:$id"), server.calls.toList(), "A failure other than not found was recovered from.")
+        assertEquals(1, server.commands.size)
+    }
+
+    @Test
+    @DisplayName("Update updates the indexed command without listing the commands of the server")
+    fun `update updates the indexed command without listing the commands of the server`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+        val server = LocalServer(UPDATED_SERVER)
+
+        val id = server.create(command.name)
+        Nexus.commandManager.index(command, id, UPDATED_SERVER)
+
+        val updated = server.requesting { NexusDefaultSynchronizeMethods.updateForServer(server.shard, command, UPDATED_SERVER).join() }
+        assertEquals(id, updated.id)
+        assertEquals(listOf("update:$id"), server.calls.toList(), "The indexed command wasn't updated directly.")
+    }
+
+    @Test
+    @DisplayName("Update falls back to listing the commands of the server when the index is stale")
+    fun `update falls back to listing the commands of the server when the index is stale`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+
+        val stale = LocalServer(STALE_UPDATED_SERVER)
+        val id = stale.create(command.name)
+        Nexus.commandManager.index(command, id + 1, STALE_UPDATED_SERVER)
+
+        val updated = stale.requesting { NexusDefaultSynchronizeMethods.updateForServer(stale.shard, command, STALE_UPDATED_SERVER).join() }
+        assertEquals(id, updated.id)
+        assertEquals(listOf("update:${id + 1}", "getSlashCommands", "update:$id"), stale.calls.toList(), "A stale index wasn't recovered from.")
+
+        // The command was deleted outside of Nexus, therefore, neither the index nor the list knows of it.
+        val deleted = LocalServer(DELETED_SERVER)
+        Nexus.commandManager.index(command, DELETED_SERVER - 1, DELETED_SERVER)
+
+        val created = deleted.requesting { NexusDefaultSynchronizeMethods.updateForServer(deleted.shard, command, DELETED_SERVER).join() }
+        assertEquals(listOf("update:${DELETED_SERVER - 1}", "getSlashCommands", "create:${created.id}"), deleted.calls.toList(), "A missing command wasn't created.")
+        assertEquals(setOf(created.id), deleted.commands.keys)
+    }
+
+    @Test
+    @DisplayName("Update only falls back when the command cannot be found")
+    fun `update only falls back when the command cannot be found`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+        val server = LocalServer(FORBIDDEN_UPDATED_SERVER)
+
+        val id = server.create(command.name)
+        Nexus.commandManager.index(command, id, FORBIDDEN_UPDATED_SERVER)
+        server.failure = MissingPermissionsException(null, "Missing access.", null, null)
+
+        val exception = assertFailsWith<CompletionException> {
+            server.requesting { NexusDefaultSynchronizeMethods.updateForServer(server.shard, command, FORBIDDEN_UPDATED_SERVER).join() }
+        }
+        assertIs<MissingPermissionsException>(exception.cause)
+        assertEquals(listOf("update:$id"), server.calls.toList(), "A failure other than not found was recovered from.")
+    }
+
+    @Test
+    @DisplayName("Update and delete fail when the server isn't on the shard")
+    fun `update and delete fail when the server isn't on the shard`() {
+        val command = Nexus.manifest(SynchronizedTestCommand())
+        val server = LocalServer(SERVER)
+
+        for (action in listOf(NexusDefaultSynchronizeMethods::updateForServer, NexusDefaultSynchronizeMethods::deleteForServer)) {
+            val exception = assertFailsWith<CompletionException> { action(server.shard, command, SERVER + 1).join() }
+            assertIs<NexusFailedActionException>(exception.cause)
+        }
+        assertEquals(emptyList(), server.calls.toList(), "A server that isn't on the shard was requested.")
+    }
+
+    /**
+     * A server whose slash commands are stored in memory, the shard, the commands and the [requests] are stand-ins that
+     * only support what the default synchronize methods use to look up, update, create and delete a command, and every
+     * request is recorded.
+     */
+    private class LocalServer(val id: Long) {
+        val commands = ConcurrentHashMap<Long, SlashCommand>()
+        val calls = ConcurrentLinkedQueue<String>()
+
+        /**
+         * The exception that looking up or updating a command by its identifier fails with, instead of [NotFoundException].
+         */
+        @Volatile var failure: Throwable? = null
+
+        private var snowflakes = id
+
+        val server: Server = proxy(Server::class.java) { method, _ ->
+            when (method.name) {
+                "getId" -> id
+                "getIdAsString" -> id.toString()
+                "getApi" -> shard
+                "getSlashCommands" -> {
+                    calls += "getSlashCommands"
+                    CompletableFuture.completedFuture(commands.values.toSet())
+                }
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        }
+
+        val shard: DiscordApi = proxy(DiscordApi::class.java) { method, args ->
+            when (method.name) {
+                "getCurrentShard" -> 0
+                "getServerById" -> if (args!![0] == id) Optional.of(server) else Optional.empty()
+                "getServerSlashCommandById" -> {
+                    val commandId = args!![1] as Long
+                    calls += "getServerSlashCommandById:$commandId"
+
+                    failure?.let { return@proxy CompletableFuture.failedFuture<SlashCommand>(it) }
+                    commands[commandId]?.let { CompletableFuture.completedFuture(it) }
+                        ?: CompletableFuture.failedFuture(NotFoundException(null, "Unknown application command.", null, null))
+                }
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        }
+
+        /**
+         * Updates and creates the commands of this server instead of sending Javacord's updaters and builders.
+         */
+        val requests = object: NexusDefaultSynchronizeMethods.Requests {
+            override fun update(shard: DiscordApi, command: NexusCommand, applicationCommandId: Long, serverId: Long): CompletableFuture<SlashCommand> {
+                calls += "update:$applicationCommandId"
+
+                failure?.let { return CompletableFuture.failedFuture(it) }
+                return commands[applicationCommandId]?.let { CompletableFuture.completedFuture(it) }
+                    ?: CompletableFuture.failedFuture(NotFoundException(null, "Unknown application command.", null, null))
+            }
+
+            override fun create(shard: DiscordApi, command: NexusCommand, serverId: Long): CompletableFuture<SlashCommand> {
+                val commandId = this@LocalServer.create(command.name)
+                calls += "create:$commandId"
+                return CompletableFuture.completedFuture(commands[commandId])
+            }
+        }
+
+        /**
+         * Executes the action while the default synchronize methods send their requests through [requests].
+         */
+        fun <T> requesting(action: () -> T): T {
+            val previous = NexusDefaultSynchronizeMethods.requests
+            NexusDefaultSynchronizeMethods.requests = requests
+            try {
+                return action()
+            } finally {
+                NexusDefaultSynchronizeMethods.requests = previous
+            }
+        }
+
+        fun create(name: String): Long {
+            val commandId = ++snowflakes
+            commands[commandId] = proxy(SlashCommand::class.java) { method, _ ->
+                when (method.name) {
+                    "getId" -> commandId
+                    "getIdAsString" -> commandId.toString()
+                    "getName" -> name
+                    "getServerId" -> Optional.of(id)
+                    "delete" -> {
+                        calls += "delete:$commandId"
+                        commands.remove(commandId)
+                        CompletableFuture.completedFuture(null)
+                    }
+                    else -> throw UnsupportedOperationException(method.name)
+                }
+            }
+            return commandId
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        private fun <T> proxy(type: Class<T>, handler: (java.lang.reflect.Method, Array<Any?>?) -> Any?): T =
+            Proxy.newProxyInstance(type.classLoader, arrayOf(type)) { proxy, method, args ->
+                when (method.name) {
+                    "equals" -> proxy === args?.get(0)
+                    "hashCode" -> System.identityHashCode(proxy)
+                    "toString" -> "${type.simpleName}{server=$id}"
+                    else -> handler(method, args)
+                }
+            } as T
+    }
+
+    companion object {
+        private const val SERVER = 9002L shl 22
+        private const val STALE_SERVER = 9003L shl 22
+        private const val UNINDEXED_SERVER = 9004L shl 22
+        private const val FORBIDDEN_SERVER = 9005L shl 22
+        private const val UPDATED_SERVER = 9006L shl 22
+        private const val STALE_UPDATED_SERVER = 9007L shl 22
+        private const val DELETED_SERVER = 9008L shl 22
+        private const val FORBIDDEN_UPDATED_SERVER = 9009L shl 22
+    }
+}
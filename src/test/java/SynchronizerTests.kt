@@ -0,0 +1,347 @@
+import commands.AssociatedTestCommand
+import commands.RateLimitedTestCommand
+import commands.SynchronizedTestCommand
+import org.javacord.api.DiscordApi
+import org.javacord.api.exception.RatelimitException
+import org.javacord.api.interaction.ApplicationCommand
+import org.javacord.api.interaction.ApplicationCommandBuilder
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.exceptions.NexusFailedActionException
+import pw.mihou.nexus.core.managers.indexes.IndexStore
+import pw.mihou.nexus.core.managers.indexes.defaults.InMemoryIndexStore
+import pw.mihou.nexus.core.managers.records.NexusMetaIndex
+import pw.mihou.nexus.features.command.synchronizer.NexusSynchronizer
+import pw.mihou.nexus.features.command.synchronizer.exceptions.NexusSynchronizerException
+import pw.mihou.nexus.features.command.synchronizer.fingerprints.NexusCommandFingerprints
+import pw.mihou.nexus.features.command.synchronizer.journal.defaults.InMemorySynchronizationJournal
+import pw.mihou.nexus.features.command.synchronizer.overwrites.NexusSynchronizeMethods
+import pw.mihou.nexus.features.command.synchronizer.overwrites.defaults.NexusDefaultSynchronizeMethods
+import stubs.InMemorySynchronizeMethods
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertIs
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertTrue
+
+class SynchronizerTests {
+
+    @Test
+    @DisplayName("Fingerprints are stable and match the live commands")
+    fun `fingerprints are stable and match the live commands`() {
+        val synchronized = Nexus.manifest(SynchronizedTestCommand())
+        val associated = Nexus.manifest(AssociatedTestCommand())
+
+        val first = NexusCommandFingerprints.describe(synchronized)
+        val second = NexusCommandFingerprints.describe(associated)
+
+        assertEquals(first, NexusCommandFingerprints.describe(Nexus.manifest(SynchronizedTestCommand())))
+        assertNotEquals(first, second, "Different commands were described the same.")
+        assertEquals(NexusCommandFingerprints.of(listOf(first, second)), NexusCommandFingerprints.of(listOf(second, first)))
+        assertNotEquals(NexusCommandFingerprints.of(listOf(first)), NexusCommandFingerprints.of(listOf(first, second)))
+
+        val methods = InMemorySynchronizeMethods()
+
+        val live = methods.createForServer(methods.shard(0), synchronized, SERVER).join()
+        assertEquals(first, NexusCommandFingerprints.describe(live), "The live command wasn't described the same as its model.")
+        assertEquals(NexusCommandFingerprints.of(listOf(first)), NexusCommandFingerprints.ofLive(setOf(live)))
+    }
+
+    @Test
+    @DisplayName("Synchronize skips, compares with live and overwrites scopes")
+    fun `synchronize skips, compares with live and overwrites scopes`() {
+        val methods = InMemorySynchronizeMethods()
+
+        val calls = ConcurrentLinkedQueue<String>()
+        val failFetches = AtomicBoolean(false)
+        methods.failure = { route, server ->
+            if (server == SERVER) calls += route
+            if (failFetches.get() && route == "fetchServer" && server == SERVER) NexusFailedActionException("The server isn't cached.")
+            else null
+        }
+
+        val synchronizer = Nexus.synchronizer
+        val journal = synchronizer.journal
+        val command = Nexus.command(SynchronizedTestCommand())
+
+        command.associate(SERVER)
+        Nexus.sharding.set(methods.shard(0))
+        synchronizer.methods = methods
+        try {
+            fun synchronize(totalShards: Int = 1): List<String> {
+                calls.clear()
+                synchronizer.synchronize(totalShards = totalShards).join()
+                return calls.toList()
+            }
+
+            synchronizer.journal = InMemorySynchronizationJournal()
+            assertEquals(listOf("fetchServer", "bulkOverwriteServer"), synchronize(), "An unknown scope wasn't compared and pushed.")
+            assertEquals(emptyList(), synchronize(), "A scope that matches the journal wasn't skipped.")
+
+            synchronizer.journal = InMemorySynchronizationJournal()
+            assertEquals(listOf("fetchServer"), synchronize(), "A scope that matches the live commands was pushed.")
+
+            synchronizer.journal = InMemorySynchronizationJournal()
+            failFetches.set(true)
+            assertEquals(listOf("fetchServer", "bulkOverwriteServer"), synchronize(), "A scope whose live commands couldn't be fetched wasn't pushed.")
+            assertNotNull(synchronizer.journal[SERVER], "The pushed scope wasn't recorded.")
+            failFetches.set(false)
+
+            synchronizer.journal = InMemorySynchronizationJournal()
+            synchronizer.compareWithLive = false
+            assertEquals(listOf("bulkOverwriteServer"), synchronize(), "An unknown scope was compared although comparing was disabled.")
+            synchronizer.compareWithLive = true
+
+            // The server belongs to the second shard, which isn't in this process, therefore, the first shard pushes it.
+            Nexus.sharding.set(methods.shard(0, 2))
+            synchronizer.journal = InMemorySynchronizationJournal()
+            assertEquals(listOf("bulkOverwriteServer"), synchronize(totalShards = 2), "A scope was compared through a shard that doesn't own it.")
+        } finally {
+            synchronizer.compareWithLive = true
+            synchronizer.journal = journal
+            synchronizer.methods = NexusDefaultSynchronizeMethods
+            Nexus.sharding.remove(0)
+            command.disassociate(SERVER)
+        }
+    }
+
+    @Test
+    @DisplayName("Backoff retries rate-limited tasks only")
+    fun `backoff retries rate-limited tasks only`() {
+        val synchronizer = Nexus.synchronizer
+        val maximumRetries = synchronizer.maximumRetries
+        val backoffInMilliseconds = synchronizer.backoffInMilliseconds
+
+        synchronizer.maximumRetries = 2
+        synchronizer.backoffInMilliseconds = 1
+        try {
+            val attempts = AtomicInteger()
+            val result = synchronizer.backoff {
+                if (attempts.incrementAndGet() < 3) CompletableFuture.failedFuture(rateLimited())
+                else CompletableFuture.completedFuture("pushed")
+            }.join()
+            assertEquals("pushed", result)
+            assertEquals(3, attempts.get(), "The rate-limited task wasn't retried.")
+
+            attempts.set(0)
+            assertFailsWith<CompletionException> {
+                synchronizer.backoff<String> {
+                    attempts.incrementAndGet()
+                    CompletableFuture.failedFuture(rateLimited())
+                }.join()
+            }
+            assertEquals(3, attempts.get(), "The rate-limited task was retried more than the maximum retries.")
+
+            attempts.set(0)
+            assertFailsWith<CompletionException> {
+                synchronizer.backoff<String> {
+                    attempts.incrementAndGet()
+                    CompletableFuture.failedFuture(NexusFailedActionException("Missing access."))
+                }.join()
+            }
+            assertEquals(1, attempts.get(), "A task that wasn't rate-limited was retried.")
+
+            val thrown = synchronizer.backoff<String> { throw NexusFailedActionException("Couldn't build the request.") }
+            assertTrue(thrown.isCompletedExceptionally, "A task that threw wasn't turned into a failed future.")
+        } finally {
+            synchronizer.maximumRetries = maximumRetries
+            synchronizer.backoffInMilliseconds = backoffInMilliseconds
+        }
+    }
+
+    @Test
+    @DisplayName("Synchronize recovers from rate-limited overwrites through the backoff")
+    fun `synchronize recovers from rate-limited overwrites through the backoff`() {
+        val methods = InMemorySynchronizeMethods()
+        methods.routeRateLimit = InMemorySynchronizeMethods.RateLimit(1, 300)
+        methods.rejectOverLimit = true
+
+        val synchronizer = Nexus.synchronizer
+        val journal = synchronizer.journal
+        val backoffInMilliseconds = synchronizer.backoffInMilliseconds
+        val command = Nexus.command(RateLimitedTestCommand())
+        val shard = methods.shard(0)
+
+        command.associate(RATE_LIMITED_SERVER)
+        Nexus.sharding.set(shard)
+        synchronizer.methods = methods
+        synchronizer.journal = InMemorySynchronizationJournal()
+        synchronizer.compareWithLive = false
+        synchronizer.backoffInMilliseconds = 400
+        try {
+            // Takes the only overwrite of the window, therefore, the first overwrite of the synchronizer is rejected.
+            methods.bulkOverwriteServer(shard, setOf(command.asSlashCommand()), RATE_LIMITED_SERVER).join()
+
+            synchronizer.synchronize(totalShards = 1).join()
+            assertEquals(3, methods.requests("bulkOverwriteServer"), "The rate-limited overwrite wasn't retried exactly once.")
+            assertEquals(setOf("ratelimited"), methods.commands(RATE_LIMITED_SERVER).mapTo(HashSet()) { it.name })
+            assertNotNull(synchronizer.journal[RATE_LIMITED_SERVER], "The retried scope wasn't recorded.")
+        } finally {
+            synchronizer.backoffInMilliseconds = backoffInMilliseconds
+            synchronizer.compareWithLive = true
+            synchronizer.journal = journal
+            synchronizer.methods = NexusDefaultSynchronizeMethods
+            Nexus.sharding.remove(0)
+            command.disassociate(RATE_LIMITED_SERVER)
+        }
+    }
+
+    @Test
+    @DisplayName("Rate-limits are found anywhere in the causes")
+    fun `rate-limits are found anywhere in the causes`() {
+        val synchronizer = Nexus.synchronizer
+
+        assertTrue(synchronizer.isRateLimited(rateLimited()))
+        assertTrue(synchronizer.isRateLimited(CompletionException(rateLimited())))
+        assertTrue(synchronizer.isRateLimited(CompletionException(RuntimeException(rateLimited()))))
+        assertFalse(synchronizer.isRateLimited(NexusFailedActionException("Missing access.")))
+        assertFalse(synchronizer.isRateLimited(CompletionException(NexusFailedActionException("Missing access."))))
+    }
+
+    @Test
+    @DisplayName("Index merger adds the indexes in batches of scopes")
+    fun `index merger adds the indexes in batches of scopes`() {
+        val batches = mutableListOf<Int>()
+        val store = object: IndexStore by InMemoryIndexStore() {
+            override fun addAll(metaIndexes: List<NexusMetaIndex>) {
+                synchronized(batches) { batches += metaIndexes.size }
+            }
+        }
+
+        val merger = NexusSynchronizer.IndexMerger(store, 2)
+        merger.add(listOf(NexusMetaIndex("a", 1, SERVER)))
+        assertEquals(emptyList(), batches, "The indexes were added before the batch was filled.")
+
+        merger.add(listOf(NexusMetaIndex("b", 2, SERVER), NexusMetaIndex("c", 3, SERVER)))
+        assertEquals(listOf(3), batches)
+
+        merger.add(listOf(NexusMetaIndex("d", 4, SERVER)))
+        merger.flush()
+        merger.flush()
+        assertEquals(listOf(3, 1), batches, "The remaining indexes weren't flushed exactly once.")
+    }
+
+    @Test
+    @DisplayName("Upsert and delete fan out over the servers and report each server")
+    fun `upsert and delete fan out over the servers and report each server`() {
+        val methods = InMemorySynchronizeMethods()
+
+        val first = 1L shl 22
+        val second = 2L shl 22
+        val failing = 3L shl 22
+        methods.failure = { _, server -> if (server == failing) NexusFailedActionException("Missing access.") else null }
+
+        val synchronizer = Nexus.synchronizer
+        val command = Nexus.manifest(SynchronizedTestCommand())
+
+        Nexus.sharding.set(methods.shard(0, 2))
+        Nexus.sharding.set(methods.shard(1, 2))
+        synchronizer.methods = methods
+        try {
+            val upserted = ConcurrentLinkedQueue<Long>()
+            val failed = ConcurrentLinkedQueue<Long>()
+            val upserts = CountDownLatch(3)
+
+            // The requests are held until the listeners are attached since the task starts as soon as it is created.
+            methods.hold()
+            val upsert = synchronizer.upsert(command, 2, first, second, failing, second)
+                .addTaskCompletionListener { upserted += it.serverId.get(); upserts.countDown() }
+                .addTaskErrorListener { failed += (it as NexusSynchronizerException).server!!; upserts.countDown() }
+            methods.release()
+            upsert.join()
+
+            assertTrue(upserts.await(5, TimeUnit.SECONDS), "Not every server was reported.")
+            assertEquals(listOf(first, second), upserted.sorted(), "The servers weren't upserted exactly once.")
+            assertEquals(listOf(failing), failed.toList())
+            assertEquals(1, methods.commands(second).size)
+            assertEquals(0, methods.commands(failing).size)
+
+            val deleted = ConcurrentLinkedQueue<Long>()
+            failed.clear()
+            val deletes = CountDownLatch(3)
+
+            methods.hold()
+            val delete = synchronizer.deleteAndReport(command, 2, first, second, failing)
+                .addTaskCompletionListener { deleted += it; deletes.countDown() }
+                .addTaskErrorListener { failed += (it as NexusSynchronizerException).server!!; deletes.countDown() }
+            methods.release()
+            delete.join()
+
+            assertTrue(deletes.await(5, TimeUnit.SECONDS), "Not every server was reported.")
+            assertEquals(listOf(first, second), deleted.sorted())
+            assertEquals(listOf(failing), failed.toList())
+            assertTrue(methods.commands(first).isEmpty() && methods.commands(second).isEmpty(), "The command wasn't deleted.")
+        } finally {
+            synchronizer.methods = NexusDefaultSynchronizeMethods
+            Nexus.sharding.remove(0)
+            Nexus.sharding.remove(1)
+        }
+    }
+
+    @Test
+    @DisplayName("Batch updates within the coalescing window are merged into one overwrite")
+    fun `batch updates within the coalescing window are merged into one overwrite`() {
+        val methods = InMemorySynchronizeMethods()
+
+        val synchronizer = Nexus.synchronizer
+        val window = synchronizer.batchUpdateCoalescingWindowInMilliseconds
+
+        Nexus.sharding.set(methods.shard(0))
+        synchronizer.methods = methods
+        synchronizer.batchUpdateCoalescingWindowInMilliseconds = 100
+        try {
+            val first = synchronizer.batchUpdate(SERVER, 1)
+            val second = synchronizer.batchUpdate(SERVER, 1)
+            val third = synchronizer.batchUpdate(SERVER, 1)
+
+            assertNotSame(first, second, "The coalesced batch updates share the same future.")
+            assertTrue(first.cancel(true))
+
+            second.get(5, TimeUnit.SECONDS)
+            third.get(5, TimeUnit.SECONDS)
+            assertEquals(1, methods.requests("bulkOverwriteServer"), "The batch updates within the window weren't merged.")
+
+            synchronizer.batchUpdate(SERVER, 1).get(5, TimeUnit.SECONDS)
+            assertEquals(2, methods.requests("bulkOverwriteServer"), "A batch update after the window was merged into the flushed one.")
+
+            synchronizer.methods = object: NexusSynchronizeMethods by methods {
+                override fun bulkOverwriteServer(
+                    shard: DiscordApi,
+                    applicationCommands: Set<ApplicationCommandBuilder<*, *, *>>,
+                    serverId: Long
+                ): CompletableFuture<Set<ApplicationCommand>> = throw IllegalStateException("The overwrite failed.")
+            }
+
+            val failing = List(3) { synchronizer.batchUpdate(SERVER, 1) }
+            for (future in failing) {
+                val exception = assertFailsWith<ExecutionException>("A batch update didn't fail with the overwrite.") {
+                    future.get(5, TimeUnit.SECONDS)
+                }
+                assertIs<IllegalStateException>(exception.cause)
+            }
+        } finally {
+            synchronizer.batchUpdateCoalescingWindowInMilliseconds = window
+            synchronizer.methods = NexusDefaultSynchronizeMethods
+            Nexus.sharding.remove(0)
+        }
+    }
+
+    private fun rateLimited() = RatelimitException(null, "You are being rate limited.", null, null)
+
+    companion object {
+        private const val SERVER = 9001L shl 22
+        private const val RATE_LIMITED_SERVER = 9010L shl 22
+    }
+}
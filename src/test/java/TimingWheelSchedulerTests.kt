@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.core.threadpool.NexusTimingWheelScheduler
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TimingWheelSchedulerTests {
+
+    @Test
+    @DisplayName("Timing wheel executes scheduled tasks")
+    fun `timing wheel executes scheduled tasks`() {
+        val scheduler = NexusTimingWheelScheduler(tickInMillis = 5, ticksPerWheel = 8)
+        val latch = CountDownLatch(2)
+
+        scheduler.launch(10) { latch.countDown() }
+        scheduler.launch(200) { latch.countDown() }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Scheduled tasks weren't executed by the timing wheel.")
+        scheduler.shutdown()
+    }
+
+    @Test
+    @DisplayName("Timing wheel does not execute cancelled tasks")
+    fun `timing wheel does not execute cancelled tasks`() {
+        val scheduler = NexusTimingWheelScheduler(tickInMillis = 5, ticksPerWheel = 8)
+        val executed = AtomicBoolean(false)
+        val latch = CountDownLatch(1)
+
+        val task = scheduler.launch(50) { executed.set(true) }
+        assertTrue(task.cancel(false), "The task couldn't be cancelled before its deadline.")
+        scheduler.launch(100) { latch.countDown() }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Scheduled task wasn't executed by the timing wheel.")
+        assertFalse(executed.get(), "The cancelled task was executed by the timing wheel.")
+        assertFalse(task.cancel(false), "The task was cancelled twice.")
+        scheduler.shutdown()
+    }
+
+    @Test
+    @DisplayName("Replacing the timing wheel does not drop its pending tasks")
+    fun `replacing the timing wheel does not drop its pending tasks`() {
+        val configuration = Nexus.configuration.launch
+        val scheduler = configuration.scheduler
+
+        try {
+            val previous = configuration.useTimingWheelScheduler(tickInMillis = 5, ticksPerWheel = 8)
+            val latch = CountDownLatch(2)
+
+            previous.launch(10) { latch.countDown() }
+            previous.launch(150) { latch.countDown() }
+
+            val wheel = configuration.useTimingWheelScheduler(tickInMillis = 5, ticksPerWheel = 8)
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "The tasks of the replaced timing wheel were dropped.")
+            wheel.shutdown()
+        } finally {
+            configuration.scheduler = scheduler
+        }
+    }
+}
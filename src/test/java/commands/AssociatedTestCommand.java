@@ -0,0 +1,15 @@
+package commands;
+
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+public class AssociatedTestCommand implements NexusHandler {
+
+    private final String name = "associated";
+    private final String description = "Hello, associated servers!";
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+
+    }
+}
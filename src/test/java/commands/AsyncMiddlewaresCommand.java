@@ -0,0 +1,28 @@
+package commands;
+
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+import java.util.List;
+
+public class AsyncMiddlewaresCommand implements NexusHandler {
+
+    private final String name = "async";
+    private final String description = "Hello, asynchronous middlewares!";
+
+    private final List<String> middlewares;
+    private final List<String> afterwares;
+
+    private final Runnable onEvent;
+
+    public AsyncMiddlewaresCommand(List<String> middlewares, List<String> afterwares, Runnable onEvent) {
+        this.middlewares = middlewares;
+        this.afterwares = afterwares;
+        this.onEvent = onEvent;
+    }
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+        onEvent.run();
+    }
+}
@@ -0,0 +1,15 @@
+package commands;
+
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+public class BenchmarkTestCommand implements NexusHandler {
+
+    private final String name = "benchmark";
+    private final String description = "Hello, benchmarked servers!";
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+
+    }
+}
@@ -0,0 +1,15 @@
+package commands;
+
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+public class IndexedTestCommand implements NexusHandler {
+
+    private final String name = "indexed";
+    private final String description = "Hello, indexed servers!";
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+
+    }
+}
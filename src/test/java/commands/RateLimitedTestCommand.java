@@ -0,0 +1,15 @@
+package commands;
+
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+public class RateLimitedTestCommand implements NexusHandler {
+
+    private final String name = "ratelimited";
+    private final String description = "Hello, rate-limited servers!";
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+
+    }
+}
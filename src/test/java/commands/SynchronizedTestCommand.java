@@ -0,0 +1,22 @@
+package commands;
+
+import org.javacord.api.interaction.SlashCommandOption;
+import org.javacord.api.interaction.SlashCommandOptionType;
+import pw.mihou.nexus.features.command.facade.NexusCommandEvent;
+import pw.mihou.nexus.features.command.facade.NexusHandler;
+
+import java.util.List;
+
+public class SynchronizedTestCommand implements NexusHandler {
+
+    private final String name = "synchronized";
+    private final String description = "Hello, synchronized servers!";
+    private final List<SlashCommandOption> options = List.of(
+            SlashCommandOption.create(SlashCommandOptionType.STRING, "query", "What to look for.", true)
+    );
+
+    @Override
+    public void onEvent(NexusCommandEvent event) {
+
+    }
+}
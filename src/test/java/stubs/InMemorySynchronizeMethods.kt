@@ -0,0 +1,462 @@
+package stubs
+
+import org.javacord.api.DiscordApi
+import org.javacord.api.entity.permission.PermissionType
+import org.javacord.api.entity.server.Server
+import org.javacord.api.exception.RatelimitException
+import org.javacord.api.interaction.*
+import pw.mihou.nexus.Nexus
+import pw.mihou.nexus.features.command.facade.NexusCommand
+import pw.mihou.nexus.features.command.synchronizer.overwrites.NexusSynchronizeMethods
+import pw.mihou.nexus.features.contexts.NexusContextMenu
+import pw.mihou.nexus.features.contexts.enums.ContextMenuKinds
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A [NexusSynchronizeMethods] that never talks to Discord, instead, it models Discord's command storage in memory:
+ * commands are stored per scope, are given snowflakes, keep their identifier when they are overwritten with the same
+ * name, and every request is subjected to a simulated latency and, optionally, rate-limits. This is meant for measuring
+ * and testing the synchronizer and the indexing without a network.
+ *
+ * Javacord's builders cannot be read back, therefore, the overwrites describe the commands from the models of
+ * [Nexus.commandManager] that belong to the scope, which is what the synchronizer pushes, and the returned commands
+ * carry the same name, description, options, localizations and permissions as their models. Builders that were added
+ * through [pw.mihou.nexus.features.command.synchronizer.NexusSynchronizer.include] are not supported since they have
+ * no model.
+ *
+ * [shard] creates a stand-in [DiscordApi] whose servers and command lookups are backed by the same storage, which
+ * allows [pw.mihou.nexus.core.managers.facade.NexusCommandManager.index] to be used with it.
+ */
+class InMemorySynchronizeMethods: NexusSynchronizeMethods {
+
+    /**
+     * A rate-limit that allows the amount of requests per window, requests that exceed the limit are delayed until
+     * the next window, which is what Javacord does when it knows of the rate-limit, or are rejected when
+     * [rejectOverLimit] is enabled.
+     */
+    data class RateLimit(val requests: Int, val perMilliseconds: Long)
+
+    /**
+     * The simulated round-trip of every request.
+     */
+    @Volatile var latencyInMilliseconds: Long = 0
+
+    /**
+     * The rate-limit that is shared by all the requests, similar to Discord's global rate-limit, null to disable, which
+     * is the default.
+     */
+    @Volatile var globalRateLimit: RateLimit? = null
+
+    /**
+     * The rate-limit of each route for each scope, such as overwriting the commands of one server, null to disable,
+     * which is the default.
+     */
+    @Volatile var routeRateLimit: RateLimit? = null
+
+    /**
+     * Whether the requests that exceed a rate-limit fail with a [RatelimitException] instead of being delayed, which is
+     * what Discord answers when the client doesn't know of the rate-limit.
+     */
+    @Volatile var rejectOverLimit: Boolean = false
+
+    /**
+     * Decides whether a request fails, this is given the route and the server of the scope (null for the global scope)
+     * and returns the exception that the request fails with, or null to let the request through.
+     */
+    @Volatile var failure: ((route: String, server: Long?) -> Throwable?)? = null
+
+    private val global = LocalScope(null)
+    private val servers = ConcurrentHashMap<Long, LocalScope>()
+
+    private val snowflakes = AtomicLong()
+    private val requests = ConcurrentHashMap<String, LongAdder>()
+    private val inFlight = ConcurrentHashMap<Int, AtomicInteger>()
+    private val peaks = ConcurrentHashMap<Int, AtomicInteger>()
+
+    @Volatile private var gate: CompletableFuture<Void> = CompletableFuture.completedFuture(null)
+
+    private val globalBucket = Bucket()
+    private val routeBuckets = ConcurrentHashMap<String, Bucket>()
+
+    companion object {
+        private const val DISCORD_EPOCH = 1420070400000L
+        private const val APPLICATION_ID = 1L
+    }
+
+    override fun bulkOverwriteGlobal(shard: DiscordApi, applicationCommands: Set<ApplicationCommandBuilder<*, *, *>>) =
+        request("bulkOverwriteGlobal", shard, null) {
+            val manager = Nexus.commandManager
+            global.overwrite(describe(manager.globalCommands, manager.globalContextMenus, applicationCommands))
+        }
+
+    override fun bulkOverwriteServer(shard: DiscordApi, applicationCommands: Set<ApplicationCommandBuilder<*, *, *>>, serverId: Long) =
+        request("bulkOverwriteServer", shard, serverId) {
+            val manager = Nexus.commandManager
+            scope(serverId).overwrite(describe(manager.commandsAssociatedWith(serverId), manager.contextMenusAssociatedWith(serverId), applicationCommands))
+        }
+
+    override fun deleteForServer(shard: DiscordApi, command: NexusCommand, serverId: Long): CompletableFuture<Void> =
+        request("deleteForServer", shard, serverId) {
+            scope(serverId).remove(ApplicationCommandType.SLASH, command.name)
+            null
+        }
+
+    override fun updateForServer(shard: DiscordApi, command: NexusCommand, serverId: Long) =
+        request("updateForServer", shard, serverId) { scope(serverId).upsert(LocalCommand.of(command)) }
+
+    override fun createForServer(shard: DiscordApi, command: NexusCommand, serverId: Long) =
+        request("createForServer", shard, serverId) { scope(serverId).upsert(LocalCommand.of(command)) }
+
+    override fun fetchGlobal(shard: DiscordApi) = request("fetchGlobal", shard, null) { global.all() }
+
+    override fun fetchServer(shard: DiscordApi, serverId: Long) = request("fetchServer", shard, serverId) { scope(serverId).all() }
+
+    /**
+     * Gets the amount of requests that were made to the route.
+     * @param route the name of the method, such as `bulkOverwriteServer`.
+     * @return the amount of requests that were made to the route.
+     */
+    fun requests(route: String): Long = requests[route]?.sum() ?: 0
+
+    /**
+     * Gets the most requests that were in-flight at the same time for the shard, a request is in-flight from the moment
+     * that it is made until it completes, which includes the time that it waits for its rate-limits.
+     * @param shard the number of the shard that made the requests.
+     * @return the most requests that were in-flight at the same time for the shard.
+     */
+    fun peakInFlight(shard: Int): Int = peaks[shard]?.get() ?: 0
+
+    /**
+     * Gets the amount of requests that were made to all the routes.
+     */
+    val totalRequests: Long get() = requests.values.sumOf { it.sum() }
+
+    /**
+     * Gets the commands that are stored for the scope without making a request.
+     * @param server the server of the scope, or null for the global scope.
+     * @return the commands that are stored for the scope.
+     */
+    fun commands(server: Long?): Set<ApplicationCommand> = if (server == null) global.all() else servers[server]?.all() ?: emptySet()
+
+    /**
+     * Holds every request that is made from now on until [release] is called, the held requests are neither counted
+     * nor sent, which allows listeners to be attached to a task before any of its requests can complete.
+     */
+    fun hold() {
+        gate = CompletableFuture()
+    }
+
+    /**
+     * Sends all the requests that were held by [hold] and stops holding the requests that are made from now on.
+     */
+    fun release() {
+        gate.complete(null)
+    }
+
+    /**
+     * Removes all the stored commands and resets the request counters and the rate-limits.
+     */
+    fun reset() {
+        global.clear()
+        servers.clear()
+        requests.clear()
+        peaks.clear()
+        routeBuckets.clear()
+        globalBucket.clear()
+    }
+
+    /**
+     * Creates a stand-in [DiscordApi] for the shard, every server that the shard owns according to the sharding
+     * formula can be found on the shard and the application commands of the shard and its servers are fetched from
+     * this storage.
+     * Any other method that isn't a plain getter is unsupported.
+     *
+     * @param shard the number of the shard.
+     * @param totalShards the total amount of shards.
+     * @param servers the servers that the shard lists as its servers, only those that the shard owns are listed.
+     * @return the stand-in shard.
+     */
+    @JvmOverloads
+    fun shard(shard: Int, totalShards: Int = 1, servers: Collection<Long> = emptyList()): DiscordApi {
+        lateinit var api: DiscordApi
+        val serverCache = ConcurrentHashMap<Long, Server>()
+
+        api = proxy(DiscordApi::class.java, "LocalShard{shard=$shard}") { method, args ->
+            when (method.name) {
+                "getCurrentShard" -> shard
+                "getTotalShards" -> totalShards
+                "getClientId" -> APPLICATION_ID
+                "getServerById" -> {
+                    val id = (args!![0] as? Long) ?: (args[0] as String).toLong()
+                    if (Nexus.sharding.calculate(id, totalShards) != shard) Optional.empty()
+                    else Optional.of(serverCache.computeIfAbsent(id) { server(it, api) })
+                }
+                "getServers" -> servers
+                    .filter { Nexus.sharding.calculate(it, totalShards) == shard }
+                    .mapTo(LinkedHashSet()) { id -> serverCache.computeIfAbsent(id) { server(it, api) } }
+                "getGlobalApplicationCommands" -> fetchGlobal(api)
+                "getServerApplicationCommands" -> {
+                    val server = args!![0]
+                    fetchServer(api, if (server is Server) server.id else server as Long)
+                }
+                else -> Unhandled
+            }
+        }
+        return api
+    }
+
+    private fun server(id: Long, api: DiscordApi): Server = proxy(Server::class.java, "LocalServer{id=$id}") { method, _ ->
+        when (method.name) {
+            "getId" -> id
+            "getIdAsString" -> id.toString()
+            "getName" -> "server-$id"
+            "getApi" -> api
+            else -> Unhandled
+        }
+    }
+
+    private fun scope(server: Long) = servers.computeIfAbsent(server) { LocalScope(it) }
+
+    private fun <T> request(route: String, shard: DiscordApi, scope: Long?, action: () -> T): CompletableFuture<T> =
+        gate.thenCompose { send(route, shard, scope, action) }
+
+    private fun <T> send(route: String, shard: DiscordApi, scope: Long?, action: () -> T): CompletableFuture<T> {
+        requests.computeIfAbsent(route) { LongAdder() }.increment()
+        failure?.invoke(route, scope)?.let { return CompletableFuture.failedFuture(it) }
+
+        val routeBucket = routeBuckets.computeIfAbsent("$route:${scope ?: "global"}") { Bucket() }
+        var delay = 0L
+        if (rejectOverLimit) {
+            val admitted = (globalRateLimit?.let { globalBucket.tryAcquire(it) } ?: true) &&
+                    (routeRateLimit?.let { routeBucket.tryAcquire(it) } ?: true)
+            if (!admitted) {
+                return CompletableFuture.failedFuture(RatelimitException(null, "You are being rate limited.", null, null))
+            }
+        } else {
+            globalRateLimit?.let { delay = globalBucket.reserve(it) }
+            routeRateLimit?.let { delay = maxOf(delay, routeBucket.reserve(it)) }
+        }
+        delay += latencyInMilliseconds
+
+        val flight = inFlight.computeIfAbsent(shard.currentShard) { AtomicInteger() }
+        peaks.computeIfAbsent(shard.currentShard) { AtomicInteger() }.accumulateAndGet(flight.incrementAndGet(), ::maxOf)
+
+        val future = CompletableFuture<T>()
+        val task = {
+            val result = runCatching(action)
+            // The request leaves the flight before it completes since its dependents may start the next request.
+            flight.decrementAndGet()
+            result.fold(future::complete, future::completeExceptionally)
+        }
+
+        if (delay <= 0) Nexus.launcher.launch { task() }
+        else Nexus.launch.scheduler.launch(delay) { task() }
+
+        return future
+    }
+
+    private fun snowflake(): Long = ((System.currentTimeMillis() - DISCORD_EPOCH) shl 22) or (snowflakes.incrementAndGet() and 0x3FFFFF)
+
+    private fun describe(
+        commands: Collection<NexusCommand>,
+        contextMenus: Collection<NexusContextMenu>,
+        builders: Set<ApplicationCommandBuilder<*, *, *>>
+    ): List<LocalCommand> {
+        val descriptions = commands.map(LocalCommand::of) + contextMenus.map(LocalCommand::of)
+        if (descriptions.size != builders.size) {
+            throw UnsupportedOperationException("The in-memory synchronize methods only support the commands and context menus of the command manager.")
+        }
+        return descriptions
+    }
+
+    private fun command(id: Long, description: LocalCommand, server: Long?): ApplicationCommand {
+        val facade = when (description.type) {
+            ApplicationCommandType.USER -> UserContextMenu::class.java
+            ApplicationCommandType.MESSAGE -> MessageContextMenu::class.java
+            else -> SlashCommand::class.java
+        }
+
+        return proxy(facade, "LocalApplicationCommand{id=$id, name=${description.name}, server=$server}") { method, _ ->
+            when (method.name) {
+                "getId" -> id
+                "getIdAsString" -> id.toString()
+                "getName" -> description.name
+                "getType" -> description.type
+                "getApplicationId" -> APPLICATION_ID
+                "getServerId" -> Optional.ofNullable(server)
+                "getDescription" -> description.description
+                "getOptions" -> description.options
+                "getNameLocalizations" -> description.nameLocalizations
+                "getDescriptionLocalizations" -> description.descriptionLocalizations
+                "isNsfw" -> description.nsfw
+                "isEnabledInDms" -> description.enabledInDms
+                "getDefaultRequiredPermissions" -> Optional.ofNullable(description.permissions)
+                else -> Unhandled
+            }
+        }
+    }
+
+    /**
+     * What Discord stores of a command, this is taken from the models since Javacord's builders cannot be read back.
+     */
+    private data class LocalCommand(
+        val type: ApplicationCommandType,
+        val name: String,
+        val description: String = "",
+        val options: List<SlashCommandOption> = emptyList(),
+        val nameLocalizations: Map<DiscordLocale, String> = emptyMap(),
+        val descriptionLocalizations: Map<DiscordLocale, String> = emptyMap(),
+        val nsfw: Boolean = false,
+        val enabledInDms: Boolean = true,
+        val permissions: EnumSet<PermissionType>? = null
+    ) {
+        companion object {
+            fun of(command: NexusCommand) = LocalCommand(
+                type = ApplicationCommandType.SLASH,
+                name = command.name.lowercase(),
+                description = command.description,
+                options = command.options,
+                nameLocalizations = command.nameLocalizations,
+                descriptionLocalizations = command.descriptionLocalizations,
+                nsfw = command.isNsfw,
+                enabledInDms = command.isEnabledInDms,
+                permissions = when {
+                    command.defaultEnabledForPermissions.isNotEmpty() -> EnumSet.copyOf(command.defaultEnabledForPermissions)
+                    command.isDefaultDisabled -> EnumSet.noneOf(PermissionType::class.java)
+                    else -> null
+                }
+            )
+
+            fun of(contextMenu: NexusContextMenu) = LocalCommand(
+                type = if (contextMenu.kind == ContextMenuKinds.USER) ApplicationCommandType.USER else ApplicationCommandType.MESSAGE,
+                name = contextMenu.name,
+                nameLocalizations = contextMenu.nameLocalizations,
+                nsfw = contextMenu.nsfw,
+                enabledInDms = contextMenu.enabledInDms,
+                permissions = if (contextMenu.requiredPermissions.isEmpty()) null else EnumSet.copyOf(contextMenu.requiredPermissions)
+            )
+        }
+    }
+
+    private object Unhandled
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> proxy(type: Class<T>, description: String, handler: (Method, Array<Any?>?) -> Any?): T {
+        return Proxy.newProxyInstance(type.classLoader, arrayOf(type)) { proxy, method, args ->
+            when (method.name) {
+                "equals" -> return@newProxyInstance proxy === args?.get(0)
+                "hashCode" -> return@newProxyInstance System.identityHashCode(proxy)
+                "toString" -> return@newProxyInstance description
+            }
+
+            val result = handler(method, args)
+            if (result !== Unhandled) return@newProxyInstance result
+            if (method.isDefault) return@newProxyInstance InvocationHandler.invokeDefault(proxy, method, *(args ?: emptyArray()))
+
+            when (method.returnType) {
+                Optional::class.java -> Optional.empty<Any>()
+                List::class.java -> emptyList<Any>()
+                Set::class.java -> emptySet<Any>()
+                Collection::class.java -> emptyList<Any>()
+                Map::class.java -> emptyMap<Any, Any>()
+                java.lang.Boolean.TYPE -> false
+                else -> throw UnsupportedOperationException("${method.name} is not supported by the in-memory synchronize methods.")
+            }
+        } as T
+    }
+
+    /**
+     * The commands of one scope, keyed by their type and lower-cased name since that is what Discord uses to decide
+     * whether an overwritten command is the same command.
+     */
+    private inner class LocalScope(private val server: Long?) {
+        private val commands = LinkedHashMap<Pair<ApplicationCommandType, String>, ApplicationCommand>()
+
+        @Synchronized
+        fun overwrite(descriptions: List<LocalCommand>): Set<ApplicationCommand> {
+            val previous = HashMap(commands)
+            commands.clear()
+            for (description in descriptions) {
+                val key = description.type to description.name.lowercase()
+                commands[key] = command(previous[key]?.id ?: snowflake(), description, server)
+            }
+            return LinkedHashSet(commands.values)
+        }
+
+        @Synchronized
+        fun upsert(description: LocalCommand): ApplicationCommand {
+            val key = description.type to description.name.lowercase()
+            val command = command(commands[key]?.id ?: snowflake(), description, server)
+            commands[key] = command
+            return command
+        }
+
+        @Synchronized
+        fun remove(type: ApplicationCommandType, name: String) {
+            commands.remove(type to name.lowercase())
+        }
+
+        @Synchronized
+        fun all(): Set<ApplicationCommand> = LinkedHashSet(commands.values)
+
+        @Synchronized
+        fun clear() = commands.clear()
+    }
+
+    /**
+     * A rate-limit bucket that hands out the delay that a request has to wait for, requests that exceed the current
+     * window are placed into the next windows.
+     */
+    private class Bucket {
+        private var windowStart = 0L
+        private var used = 0
+
+        @Synchronized
+        fun reserve(limit: RateLimit): Long {
+            val now = System.currentTimeMillis()
+            if (now >= windowStart + limit.perMilliseconds) {
+                windowStart = now
+                used = 0
+            }
+
+            if (used >= limit.requests) {
+                windowStart += limit.perMilliseconds
+                used = 0
+            }
+
+            used++
+            return (windowStart - now).coerceAtLeast(0)
+        }
+
+        /**
+         * Takes a request from the current window without handing out a delay.
+         * @return whether the current window still had room for the request.
+         */
+        @Synchronized
+        fun tryAcquire(limit: RateLimit): Boolean {
+            val now = System.currentTimeMillis()
+            if (now >= windowStart + limit.perMilliseconds) {
+                windowStart = now
+                used = 0
+            }
+
+            if (used >= limit.requests) return false
+            used++
+            return true
+        }
+
+        @Synchronized
+        fun clear() {
+            windowStart = 0
+            used = 0
+        }
+    }
+}